@@ -0,0 +1,111 @@
+package com.agoragames.leaderboard;
+
+/**
+ * Circuit breaker that opens after consecutive failures and lets a single
+ * trial request through once the open interval has elapsed
+ */
+public class CircuitBreaker {
+
+	public enum State {
+		CLOSED,
+		OPEN,
+		HALF_OPEN
+	}
+
+	public static final int DEFAULT_FAILURE_THRESHOLD = 5;
+	public static final long DEFAULT_OPEN_MILLIS = 5000;
+
+	private int _failureThreshold;
+	private long _openMillis;
+
+	private State _state = State.CLOSED;
+	private int _consecutiveFailures;
+	private long _openedAt;
+	private boolean _trialInFlight;
+
+	/**
+	 * Create a circuit breaker using the default failure threshold and open interval
+	 */
+	public CircuitBreaker() {
+		this(DEFAULT_FAILURE_THRESHOLD, DEFAULT_OPEN_MILLIS);
+	}
+
+	/**
+	 * Create a circuit breaker with a given failure threshold and open interval
+	 *
+	 * @param failureThreshold Consecutive failed operations before the circuit opens; retries of an operation are not counted separately
+	 * @param openMillis Time in milliseconds the circuit stays open before a trial request
+	 */
+	public CircuitBreaker(int failureThreshold, long openMillis) {
+		_failureThreshold = failureThreshold < 1 ? DEFAULT_FAILURE_THRESHOLD : failureThreshold;
+		_openMillis = openMillis < 0 ? DEFAULT_OPEN_MILLIS : openMillis;
+	}
+
+	/**
+	 * Get the current state
+	 *
+	 * @return Current state
+	 */
+	public synchronized State getState() {
+		if (_state == State.OPEN && System.currentTimeMillis() - _openedAt >= _openMillis) {
+			return State.HALF_OPEN;
+		}
+
+		return _state;
+	}
+
+	/**
+	 * Check whether a request may proceed
+	 *
+	 * @return true if the request may proceed, false if it should fail fast
+	 */
+	public synchronized boolean allowRequest() {
+		if (_state == State.CLOSED) {
+			return true;
+		}
+
+		if (_state == State.OPEN) {
+			if (System.currentTimeMillis() - _openedAt < _openMillis) {
+				return false;
+			}
+			_state = State.HALF_OPEN;
+		}
+
+		if (_trialInFlight) {
+			return false;
+		}
+
+		_trialInFlight = true;
+		return true;
+	}
+
+	/**
+	 * Record a successful request, closing the circuit
+	 */
+	public synchronized void recordSuccess() {
+		_state = State.CLOSED;
+		_consecutiveFailures = 0;
+		_trialInFlight = false;
+	}
+
+	/**
+	 * Release a request that was allowed but abandoned before Redis answered it, without
+	 * recording an outcome. If it was the trial request, another trial may be let through.
+	 */
+	public synchronized void releaseRequest() {
+		_trialInFlight = false;
+	}
+
+	/**
+	 * Record a failed request, opening the circuit once the failure threshold is reached
+	 */
+	public synchronized void recordFailure() {
+		_consecutiveFailures++;
+		_trialInFlight = false;
+
+		if (_state == State.HALF_OPEN || _consecutiveFailures >= _failureThreshold) {
+			_state = State.OPEN;
+			_openedAt = System.currentTimeMillis();
+		}
+	}
+}
@@ -0,0 +1,136 @@
+package com.agoragames.leaderboard;
+
+/**
+ * Packs a primary score and one or more tie-breakers into a single sorted set score.
+ *
+ * Each component is a non-negative integer with a fixed number of bits. The first
+ * component occupies the highest bits, so members are ordered by the primary score
+ * first and by each tie-breaker in turn. At most 53 bits are used in total, which
+ * keeps the packed value exactly representable as a double.
+ *
+ * An inverted component is stored as its maximum value minus the value, which
+ * reverses its order. On a regular leaderboard, where higher scores rank first,
+ * invert a tie-breaker such as a timestamp to rank earlier values first.
+ */
+public class CompositeScoreFormat {
+
+	public static final int MAX_BITS = 53;
+
+	private int[] _componentBits;
+	private boolean[] _inverted;
+	private long[] _maxValues;
+	private int _totalBits;
+
+	/**
+	 * Create a format with the given component widths, none of them inverted
+	 *
+	 * @param componentBits Number of bits for each component, primary score first
+	 */
+	public CompositeScoreFormat(int... componentBits) {
+		this(componentBits, new boolean[componentBits.length]);
+	}
+
+	/**
+	 * Create a format with the given component widths and orders
+	 *
+	 * @param componentBits Number of bits for each component, primary score first
+	 * @param inverted Whether each component ranks lower values first on a regular leaderboard
+	 */
+	public CompositeScoreFormat(int[] componentBits, boolean[] inverted) {
+		if (componentBits.length == 0 || componentBits.length != inverted.length) {
+			throw new IllegalArgumentException("Expected at least one component and an order for each component");
+		}
+
+		int totalBits = 0;
+		_maxValues = new long[componentBits.length];
+		for (int i = 0; i < componentBits.length; i++) {
+			if (componentBits[i] < 1) {
+				throw new IllegalArgumentException("Component " + i + " must have at least one bit");
+			}
+			totalBits += componentBits[i];
+			_maxValues[i] = (1L << Math.min(componentBits[i], MAX_BITS)) - 1;
+		}
+
+		if (totalBits > MAX_BITS) {
+			throw new IllegalArgumentException("Components use " + totalBits + " bits, at most " + MAX_BITS + " fit in a score");
+		}
+
+		_componentBits = componentBits.clone();
+		_inverted = inverted.clone();
+		_totalBits = totalBits;
+	}
+
+	/**
+	 * Get the number of components
+	 *
+	 * @return Number of components
+	 */
+	public int getComponentCount() {
+		return _componentBits.length;
+	}
+
+	/**
+	 * Get the largest value a component can hold
+	 *
+	 * @param index Component index, 0 for the primary score
+	 * @return Largest value
+	 */
+	public long getMaxValue(int index) {
+		return _maxValues[index];
+	}
+
+	/**
+	 * Pack components into a score
+	 *
+	 * @param components Component values, primary score first
+	 * @return Packed score
+	 */
+	public double encode(long... components) {
+		if (components.length != _componentBits.length) {
+			throw new IllegalArgumentException("Expected " + _componentBits.length + " components, got " + components.length);
+		}
+
+		long packed = 0;
+		for (int i = 0; i < components.length; i++) {
+			if (components[i] < 0 || components[i] > _maxValues[i]) {
+				throw new IllegalArgumentException("Component " + i + " must be between 0 and " + _maxValues[i] + ", got " + components[i]);
+			}
+			packed = (packed << _componentBits[i]) | (_inverted[i] ? _maxValues[i] - components[i] : components[i]);
+		}
+
+		return packed;
+	}
+
+	/**
+	 * Check whether a score is a value produced by this format
+	 *
+	 * @param score Score
+	 * @return true if the score can be decoded, false otherwise
+	 */
+	public boolean isEncoded(double score) {
+		return score >= 0 && score < (double) (1L << MAX_BITS) && score == Math.floor(score)
+			&& ((long) score >>> _totalBits) == 0;
+	}
+
+	/**
+	 * Unpack a score into its components
+	 *
+	 * @param score Packed score
+	 * @return Component values, primary score first
+	 */
+	public long[] decode(double score) {
+		if (!isEncoded(score)) {
+			throw new IllegalArgumentException("Score " + score + " was not packed by this format");
+		}
+
+		long packed = (long) score;
+		long[] components = new long[_componentBits.length];
+		for (int i = components.length - 1; i >= 0; i--) {
+			long stored = packed & _maxValues[i];
+			components[i] = _inverted[i] ? _maxValues[i] - stored : stored;
+			packed >>>= _componentBits[i];
+		}
+
+		return components;
+	}
+}
@@ -0,0 +1,611 @@
+package com.agoragames.leaderboard;
+
+import java.nio.charset.Charset;
+import java.util.*;
+
+import redis.clients.jedis.DefaultJedisClientConfig;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisClientConfig;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Protocol;
+import redis.clients.jedis.RedisProtocol;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.Transaction;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisNoScriptException;
+import redis.clients.jedis.params.ZAddParams;
+import redis.clients.jedis.params.ZRangeParams;
+
+/**
+ * RedisTransport on a Jedis connection, using the commands of Redis 6.2 and later.
+ *
+ * Conditional writes use the ZADD NX, XX, GT and LT flags. Writes with side effects run
+ * as a single script so the previous rank, trim and change feed publish need no WATCH
+ * retries. Range replies are decoded straight into LeaderData from either RESP2 or
+ * RESP3 replies.
+ *
+ * Writing the score a member already has changes nothing, so a write that is repeated
+ * after a lost reply does not overwrite the recorded previous rank.
+ */
+public class JedisTransport implements RedisTransport {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/**
+	 * KEYS: leaderboard, previous rank hash (optional)
+	 * ARGV: member, score or delta, ZADD condition or INCR, max members, reverse, change feed channel
+	 */
+	static final String WRITE_SCRIPT =
+		"local current = redis.call('ZSCORE', KEYS[1], ARGV[1])\n" +
+		"if current and ARGV[3] ~= 'INCR' and tonumber(current) == tonumber(ARGV[2]) then return {0} end\n" +
+		"local reverse = ARGV[5] == '1'\n" +
+		"local rank\n" +
+		"if current and KEYS[2] then\n" +
+		"  if reverse then rank = redis.call('ZRANK', KEYS[1], ARGV[1]) else rank = redis.call('ZREVRANK', KEYS[1], ARGV[1]) end\n" +
+		"end\n" +
+		"local score\n" +
+		"if ARGV[3] == 'INCR' then\n" +
+		"  score = redis.call('ZINCRBY', KEYS[1], ARGV[2], ARGV[1])\n" +
+		"else\n" +
+		"  local zadd = {'ZADD', KEYS[1]}\n" +
+		"  if ARGV[3] ~= '' then zadd[#zadd + 1] = ARGV[3] end\n" +
+		"  zadd[#zadd + 1] = 'CH'\n" +
+		"  zadd[#zadd + 1] = ARGV[2]\n" +
+		"  zadd[#zadd + 1] = ARGV[1]\n" +
+		"  if redis.call(unpack(zadd)) == 0 then return {0} end\n" +
+		"  score = redis.call('ZSCORE', KEYS[1], ARGV[1])\n" +
+		"end\n" +
+		"if KEYS[2] then\n" +
+		"  if current then redis.call('HSET', KEYS[2], ARGV[1], current .. ' ' .. rank) else redis.call('HDEL', KEYS[2], ARGV[1]) end\n" +
+		"end\n" +
+		"local maxMembers = tonumber(ARGV[4])\n" +
+		"if maxMembers > 0 then\n" +
+		"  local start, stop = 0, -(maxMembers + 1)\n" +
+		"  if reverse then start, stop = maxMembers, -1 end\n" +
+		"  if KEYS[2] then\n" +
+		"    local trimmed = redis.call('ZRANGE', KEYS[1], start, stop)\n" +
+		"    for i = 1, #trimmed, 1000 do redis.call('HDEL', KEYS[2], unpack(trimmed, i, math.min(i + 999, #trimmed))) end\n" +
+		"  end\n" +
+		"  redis.call('ZREMRANGEBYRANK', KEYS[1], start, stop)\n" +
+		"end\n" +
+		"if ARGV[6] ~= '' then\n" +
+		"  redis.call('PUBLISH', ARGV[6], '" + LeaderboardReplica.SCORE_CHANGED + " ' .. score .. ' ' .. ARGV[1])\n" +
+		"  if maxMembers > 0 then redis.call('PUBLISH', ARGV[6], '" + LeaderboardReplica.TRIMMED + " ' .. maxMembers) end\n" +
+		"end\n" +
+		"if current then return {0, score} end\n" +
+		"return {1, score}\n";
+
+	/**
+	 * KEYS: leaderboard, previous rank hash (optional)
+	 * ARGV: SCORE or RANK, minimum score or first rank, maximum score or last rank, change feed channel, change feed message
+	 */
+	static final String REMOVE_SCRIPT =
+		"local members\n" +
+		"if KEYS[2] then\n" +
+		"  if ARGV[1] == 'SCORE' then members = redis.call('ZRANGEBYSCORE', KEYS[1], ARGV[2], ARGV[3]) else members = redis.call('ZRANGE', KEYS[1], ARGV[2], ARGV[3]) end\n" +
+		"  for i = 1, #members, 1000 do redis.call('HDEL', KEYS[2], unpack(members, i, math.min(i + 999, #members))) end\n" +
+		"end\n" +
+		"local removed\n" +
+		"if ARGV[1] == 'SCORE' then removed = redis.call('ZREMRANGEBYSCORE', KEYS[1], ARGV[2], ARGV[3]) else removed = redis.call('ZREMRANGEBYRANK', KEYS[1], ARGV[2], ARGV[3]) end\n" +
+		"if ARGV[4] ~= '' then redis.call('PUBLISH', ARGV[4], ARGV[5]) end\n" +
+		"return removed\n";
+
+	private HostAndPort _hostAndPort;
+	private JedisClientConfig _clientConfig;
+	private volatile Jedis _jedis;
+	private volatile boolean _reconnect;
+	private String _writeScriptSha;
+	private String _removeScriptSha;
+
+	/**
+	 * Create a transport connecting to the given host and port over RESP3
+	 *
+	 * @param host Redis host
+	 * @param port Redis port
+	 */
+	public JedisTransport(String host, int port) {
+		this(new HostAndPort(host, port), DefaultJedisClientConfig.builder().protocol(RedisProtocol.RESP3).build());
+	}
+
+	/**
+	 * Create a transport connecting to the given Redis instance. The client configuration,
+	 * including the protocol, credentials and database, is applied again on every reconnect.
+	 *
+	 * @param hostAndPort Redis host and port
+	 * @param clientConfig Client configuration
+	 */
+	public JedisTransport(HostAndPort hostAndPort, JedisClientConfig clientConfig) {
+		_hostAndPort = hostAndPort;
+		_clientConfig = clientConfig;
+		_jedis = new Jedis(hostAndPort, clientConfig);
+	}
+
+	/**
+	 * Create a transport using an existing Redis connection. The transport does not know
+	 * how the connection was configured, so reconnect only reopens its socket and the
+	 * HELLO, AUTH and SELECT handshake is not repeated; use the HostAndPort constructor
+	 * for connections that need one.
+	 *
+	 * @param redisConnection Redis connection
+	 */
+	public JedisTransport(Jedis redisConnection) {
+		_jedis = redisConnection;
+	}
+
+	public long zcard(String key) {
+		try {
+			return jedis().zcard(key);
+		} catch (JedisConnectionException e) {
+			throw new RedisConnectionException(e);
+		}
+	}
+
+	public long zcount(String key, double minScore, double maxScore) {
+		try {
+			return jedis().zcount(key, minScore, maxScore);
+		} catch (JedisConnectionException e) {
+			throw new RedisConnectionException(e);
+		}
+	}
+
+	public Double zscore(String key, String member) {
+		try {
+			return jedis().zscore(key, member);
+		} catch (JedisConnectionException e) {
+			throw new RedisConnectionException(e);
+		}
+	}
+
+	public Long rank(String key, String member, boolean reverse) {
+		try {
+			if (reverse) {
+				return jedis().zrank(key, member);
+			}
+
+			return jedis().zrevrank(key, member);
+		} catch (JedisConnectionException e) {
+			throw new RedisConnectionException(e);
+		}
+	}
+
+	public List<LeaderData> range(String key, long start, long stop, boolean reverse, long firstRank) {
+		try {
+			Object reply;
+			if (reverse) {
+				reply = jedis().sendCommand(Protocol.Command.ZRANGE, key, Long.toString(start), Long.toString(stop), "WITHSCORES");
+			} else {
+				reply = jedis().sendCommand(Protocol.Command.ZRANGE, key, Long.toString(start), Long.toString(stop), "REV", "WITHSCORES");
+			}
+
+			return decodeRange((List<?>) reply, firstRank);
+		} catch (JedisConnectionException e) {
+			throw new RedisConnectionException(e);
+		}
+	}
+
+	public long addScore(String key, String member, double score, WriteMode writeMode, WriteOptions options) {
+		try {
+			String condition = conditionFor(writeMode, options.isReverse());
+
+			if (options.isPlain()) {
+				if (condition.length() == 0) {
+					return jedis().zadd(key, score, member);
+				}
+
+				return jedis().zadd(key, score, member, paramsFor(condition));
+			}
+
+			List<?> reply = evalWriteScript(key, member, formatScore(score), condition, options);
+			return (Long) reply.get(0);
+		} catch (JedisConnectionException e) {
+			throw new RedisConnectionException(e);
+		}
+	}
+
+	public double incrementScore(String key, String member, double delta, WriteOptions options) {
+		try {
+			if (options.isPlain()) {
+				return jedis().zincrby(key, delta, member);
+			}
+
+			List<?> reply = evalWriteScript(key, member, formatScore(delta), "INCR", options);
+			return LeaderboardReplica.parseScore(decodeString(reply.get(1)));
+		} catch (JedisConnectionException e) {
+			throw new RedisConnectionException(e);
+		}
+	}
+
+	public long removeRangeByScore(String key, double minScore, double maxScore, WriteOptions options) {
+		try {
+			if (options.getPreviousKey() == null && options.getChannel() == null) {
+				return jedis().zremrangeByScore(key, minScore, maxScore);
+			}
+
+			return evalRemoveScript(key, "SCORE", formatScore(minScore), formatScore(maxScore),
+					options, LeaderboardReplica.scoreRangeRemovedMessage(minScore, maxScore));
+		} catch (JedisConnectionException e) {
+			throw new RedisConnectionException(e);
+		}
+	}
+
+	public long removeOutsideRank(String key, int maxMembers, WriteOptions options) {
+		try {
+			long start = options.isReverse() ? maxMembers : 0;
+			long stop = options.isReverse() ? -1 : -(maxMembers + 1);
+
+			if (options.getPreviousKey() == null && options.getChannel() == null) {
+				return jedis().zremrangeByRank(key, start, stop);
+			}
+
+			return evalRemoveScript(key, "RANK", Long.toString(start), Long.toString(stop),
+					options, LeaderboardReplica.trimmedMessage(maxMembers));
+		} catch (JedisConnectionException e) {
+			throw new RedisConnectionException(e);
+		}
+	}
+
+	public long unlink(String... keys) {
+		try {
+			return jedis().unlink(keys);
+		} catch (JedisConnectionException e) {
+			throw new RedisConnectionException(e);
+		}
+	}
+
+	public RedisBatch batch(boolean atomic) {
+		try {
+			return new JedisBatch(atomic);
+		} catch (JedisConnectionException e) {
+			throw new RedisConnectionException(e);
+		}
+	}
+
+	public void disconnect() {
+		_jedis.disconnect();
+	}
+
+	public void reconnect() {
+		_jedis.disconnect();
+		if (_clientConfig != null) {
+			_reconnect = true;
+		}
+	}
+
+	/**
+	 * Get the connection, opening a new one with the full handshake if reconnect was called
+	 *
+	 * @return Redis connection
+	 */
+	private Jedis jedis() {
+		if (_reconnect) {
+			// Connects and runs the handshake, so the flag is only cleared once it succeeds;
+			// otherwise the next command would reopen the old connection without one
+			Jedis jedis = new Jedis(_hostAndPort, _clientConfig);
+			_jedis = jedis;
+			_reconnect = false;
+		}
+
+		return _jedis;
+	}
+
+	/**
+	 * Decode a WITHSCORES range reply into LeaderData. RESP3 replies hold a
+	 * [member, score] pair per member, RESP2 replies alternate members and scores.
+	 *
+	 * @param reply Range reply
+	 * @param firstRank Rank given to the first member
+	 * @return List of LeaderData objects
+	 */
+	static List<LeaderData> decodeRange(List<?> reply, long firstRank) {
+		if (reply.isEmpty()) {
+			return new ArrayList<LeaderData>(0);
+		}
+
+		long rank = firstRank;
+		List<LeaderData> leaderData;
+		if (reply.get(0) instanceof List) {
+			leaderData = new ArrayList<LeaderData>(reply.size());
+			for (Object item : reply) {
+				List<?> pair = (List<?>) item;
+				leaderData.add(new LeaderData(decodeString(pair.get(0)), decodeScore(pair.get(1)), rank++));
+			}
+		} else {
+			leaderData = new ArrayList<LeaderData>(reply.size() / 2);
+			for (int i = 0; i + 1 < reply.size(); i += 2) {
+				leaderData.add(new LeaderData(decodeString(reply.get(i)), decodeScore(reply.get(i + 1)), rank++));
+			}
+		}
+
+		return leaderData;
+	}
+
+	static String decodeString(Object value) {
+		if (value instanceof byte[]) {
+			return new String((byte[]) value, UTF_8);
+		}
+
+		return (String) value;
+	}
+
+	static double decodeScore(Object value) {
+		if (value instanceof Number) {
+			return ((Number) value).doubleValue();
+		}
+
+		return LeaderboardReplica.parseScore(decodeString(value));
+	}
+
+	/**
+	 * Format a score so that Redis parses it back to exactly the same double
+	 *
+	 * @param score Score
+	 * @return Score as a string
+	 */
+	static String formatScore(double score) {
+		if (score == Double.POSITIVE_INFINITY) {
+			return "+inf";
+		}
+		if (score == Double.NEGATIVE_INFINITY) {
+			return "-inf";
+		}
+
+		return Double.toString(score);
+	}
+
+	/**
+	 * Map a write mode onto a ZADD flag
+	 *
+	 * @param writeMode Write mode
+	 * @param reverse Rank lowest scores first if true, highest scores first otherwise
+	 * @return ZADD flag, or an empty string for an unconditional write
+	 */
+	static String conditionFor(WriteMode writeMode, boolean reverse) {
+		if (writeMode == null) {
+			return "";
+		}
+
+		switch (writeMode) {
+			case ONLY_IF_NEW:
+				return "NX";
+			case ONLY_IF_EXISTING:
+				return "XX";
+			case ONLY_IF_GREATER:
+				return "GT";
+			case ONLY_IF_LESS:
+				return "LT";
+			case KEEP_BEST:
+				return reverse ? "LT" : "GT";
+			default:
+				return "";
+		}
+	}
+
+	private static ZAddParams paramsFor(String condition) {
+		ZAddParams params = ZAddParams.zAddParams();
+		if ("NX".equals(condition)) {
+			return params.nx();
+		}
+		if ("XX".equals(condition)) {
+			return params.xx();
+		}
+		if ("GT".equals(condition)) {
+			return params.gt();
+		}
+
+		return params.lt();
+	}
+
+	/**
+	 * Run the write script, loading it into the script cache if Redis does not hold it
+	 *
+	 * @return Script reply: 1 if the member was added, 0 otherwise, followed by the updated score if the score was written
+	 */
+	private List<?> evalWriteScript(String key, String member, String value, String condition, WriteOptions options) {
+		List<String> keys = new ArrayList<String>(2);
+		keys.add(key);
+		if (options.getPreviousKey() != null) {
+			keys.add(options.getPreviousKey());
+		}
+
+		List<String> args = Arrays.asList(member, value, condition, Integer.toString(options.getMaxMembers()),
+				options.isReverse() ? "1" : "0", options.getChannel() == null ? "" : options.getChannel());
+
+		if (_writeScriptSha == null) {
+			_writeScriptSha = jedis().scriptLoad(WRITE_SCRIPT);
+		}
+
+		try {
+			return (List<?>) jedis().evalsha(_writeScriptSha, keys, args);
+		} catch (JedisNoScriptException e) {
+			// Redis restarted or flushed its script cache
+			_writeScriptSha = jedis().scriptLoad(WRITE_SCRIPT);
+			return (List<?>) jedis().evalsha(_writeScriptSha, keys, args);
+		}
+	}
+
+	/**
+	 * Run the remove script, loading it into the script cache if Redis does not hold it
+	 *
+	 * @return Number of members removed
+	 */
+	private long evalRemoveScript(String key, String by, String min, String max, WriteOptions options, String message) {
+		List<String> keys = new ArrayList<String>(2);
+		keys.add(key);
+		if (options.getPreviousKey() != null) {
+			keys.add(options.getPreviousKey());
+		}
+
+		List<String> args = Arrays.asList(by, min, max, options.getChannel() == null ? "" : options.getChannel(), message);
+
+		if (_removeScriptSha == null) {
+			_removeScriptSha = jedis().scriptLoad(REMOVE_SCRIPT);
+		}
+
+		try {
+			return (Long) jedis().evalsha(_removeScriptSha, keys, args);
+		} catch (JedisNoScriptException e) {
+			_removeScriptSha = jedis().scriptLoad(REMOVE_SCRIPT);
+			return (Long) jedis().evalsha(_removeScriptSha, keys, args);
+		}
+	}
+
+	/**
+	 * Batch queued on a pipeline, or on a transaction if atomic
+	 */
+	private class JedisBatch implements RedisBatch {
+
+		private Pipeline _pipeline;
+		private Transaction _transaction;
+		private List<Response<?>> _responses = new ArrayList<Response<?>>();
+
+		JedisBatch(boolean atomic) {
+			if (atomic) {
+				_transaction = jedis().multi();
+			} else {
+				_pipeline = jedis().pipelined();
+			}
+		}
+
+		public void zcard(String key) {
+			try {
+				_responses.add(_transaction != null ? _transaction.zcard(key) : _pipeline.zcard(key));
+			} catch (JedisConnectionException e) {
+				throw new RedisConnectionException(e);
+			}
+		}
+
+		public void zscore(String key, String member) {
+			try {
+				_responses.add(_transaction != null ? _transaction.zscore(key, member) : _pipeline.zscore(key, member));
+			} catch (JedisConnectionException e) {
+				throw new RedisConnectionException(e);
+			}
+		}
+
+		public void zmscore(String key, List<String> members) {
+			try {
+				String[] memberArray = members.toArray(new String[members.size()]);
+				_responses.add(_transaction != null ? _transaction.zmscore(key, memberArray) : _pipeline.zmscore(key, memberArray));
+			} catch (JedisConnectionException e) {
+				throw new RedisConnectionException(e);
+			}
+		}
+
+		public void rank(String key, String member, boolean reverse) {
+			try {
+				if (reverse) {
+					_responses.add(_transaction != null ? _transaction.zrank(key, member) : _pipeline.zrank(key, member));
+				} else {
+					_responses.add(_transaction != null ? _transaction.zrevrank(key, member) : _pipeline.zrevrank(key, member));
+				}
+			} catch (JedisConnectionException e) {
+				throw new RedisConnectionException(e);
+			}
+		}
+
+		public void hmget(String key, List<String> fields) {
+			try {
+				String[] fieldArray = fields.toArray(new String[fields.size()]);
+				_responses.add(_transaction != null ? _transaction.hmget(key, fieldArray) : _pipeline.hmget(key, fieldArray));
+			} catch (JedisConnectionException e) {
+				throw new RedisConnectionException(e);
+			}
+		}
+
+		public void exists(String key) {
+			try {
+				_responses.add(_transaction != null ? _transaction.exists(key) : _pipeline.exists(key));
+			} catch (JedisConnectionException e) {
+				throw new RedisConnectionException(e);
+			}
+		}
+
+		public void zrem(String key, List<String> members) {
+			try {
+				String[] memberArray = members.toArray(new String[members.size()]);
+				_responses.add(_transaction != null ? _transaction.zrem(key, memberArray) : _pipeline.zrem(key, memberArray));
+			} catch (JedisConnectionException e) {
+				throw new RedisConnectionException(e);
+			}
+		}
+
+		public void hdel(String key, List<String> fields) {
+			try {
+				String[] fieldArray = fields.toArray(new String[fields.size()]);
+				_responses.add(_transaction != null ? _transaction.hdel(key, fieldArray) : _pipeline.hdel(key, fieldArray));
+			} catch (JedisConnectionException e) {
+				throw new RedisConnectionException(e);
+			}
+		}
+
+		public void del(String... keys) {
+			try {
+				_responses.add(_transaction != null ? _transaction.del(keys) : _pipeline.del(keys));
+			} catch (JedisConnectionException e) {
+				throw new RedisConnectionException(e);
+			}
+		}
+
+		public void unlink(String... keys) {
+			try {
+				_responses.add(_transaction != null ? _transaction.unlink(keys) : _pipeline.unlink(keys));
+			} catch (JedisConnectionException e) {
+				throw new RedisConnectionException(e);
+			}
+		}
+
+		public void rename(String key, String newKey) {
+			try {
+				_responses.add(_transaction != null ? _transaction.rename(key, newKey) : _pipeline.rename(key, newKey));
+			} catch (JedisConnectionException e) {
+				throw new RedisConnectionException(e);
+			}
+		}
+
+		public void copy(String source, String destination, int maxMembers, boolean reverse) {
+			try {
+				if (maxMembers < 1) {
+					_responses.add(_transaction != null ? _transaction.zunionstore(destination, source) : _pipeline.zunionstore(destination, source));
+					return;
+				}
+
+				// ZRANGESTORE copies only the top members instead of the whole sorted set
+				ZRangeParams params = ZRangeParams.zrangeParams(0, maxMembers - 1);
+				if (!reverse) {
+					params = params.rev();
+				}
+				_responses.add(_transaction != null ? _transaction.zrangestore(destination, source, params) : _pipeline.zrangestore(destination, source, params));
+			} catch (JedisConnectionException e) {
+				throw new RedisConnectionException(e);
+			}
+		}
+
+		public void publish(String channel, String message) {
+			try {
+				_responses.add(_transaction != null ? _transaction.publish(channel, message) : _pipeline.publish(channel, message));
+			} catch (JedisConnectionException e) {
+				throw new RedisConnectionException(e);
+			}
+		}
+
+		public List<Object> execute() {
+			try {
+				if (_transaction != null) {
+					_transaction.exec();
+				} else {
+					_pipeline.sync();
+				}
+
+				List<Object> replies = new ArrayList<Object>(_responses.size());
+				for (Response<?> response : _responses) {
+					replies.add(response.get());
+				}
+
+				return replies;
+			} catch (JedisConnectionException e) {
+				throw new RedisConnectionException(e);
+			}
+		}
+	}
+}
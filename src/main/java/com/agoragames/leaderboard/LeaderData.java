@@ -5,6 +5,10 @@ public class LeaderData {
 	private String _member;
 	private Double _score;
 	private Long _rank;
+	private long[] _scoreComponents;
+	private Double _previousScore;
+	private Long _previousRank;
+	private Long _rankDelta;
 	
 	/**
 	 * Store leader data
@@ -72,4 +76,86 @@ public class LeaderData {
 	public long getRank() {
 		return _rank;
 	}
+
+	/**
+	 * Set the components packed into the score
+	 * 
+	 * @param scoreComponents Score components
+	 */
+	public void setScoreComponents(long[] scoreComponents) {
+		_scoreComponents = scoreComponents;
+	}
+	
+	/**
+	 * Get the components packed into the score
+	 * 
+	 * @return Score components, or null if the leaderboard has no composite score format
+	 */
+	public long[] getScoreComponents() {
+		return _scoreComponents;
+	}
+	
+	/**
+	 * Get a component packed into the score
+	 * 
+	 * @param index Component index, 0 for the primary score
+	 * @return Score component
+	 */
+	public long getScoreComponent(int index) {
+		return _scoreComponents[index];
+	}
+
+	/**
+	 * Set the score before the member's last write
+	 * 
+	 * @param previousScore Previous score
+	 */
+	public void setPreviousScore(Double previousScore) {
+		_previousScore = previousScore;
+	}
+	
+	/**
+	 * Get the score before the member's last write
+	 * 
+	 * @return Previous score, or null if not tracked
+	 */
+	public Double getPreviousScore() {
+		return _previousScore;
+	}
+	
+	/**
+	 * Set the rank before the member's last write
+	 * 
+	 * @param previousRank Previous rank
+	 */
+	public void setPreviousRank(Long previousRank) {
+		_previousRank = previousRank;
+	}
+	
+	/**
+	 * Get the rank before the member's last write
+	 * 
+	 * @return Previous rank, or null if not tracked
+	 */
+	public Long getPreviousRank() {
+		return _previousRank;
+	}
+	
+	/**
+	 * Set the number of places moved since the last rank snapshot
+	 * 
+	 * @param rankDelta Places moved up, negative if moved down
+	 */
+	public void setRankDelta(Long rankDelta) {
+		_rankDelta = rankDelta;
+	}
+	
+	/**
+	 * Get the number of places moved since the last rank snapshot
+	 * 
+	 * @return Places moved up, negative if moved down, or null if not in the last snapshot
+	 */
+	public Long getRankDelta() {
+		return _rankDelta;
+	}
 }
@@ -3,20 +3,30 @@ package com.agoragames.leaderboard;
 import java.util.*;
 
 import redis.clients.jedis.Jedis;
-import redis.clients.jedis.Tuple;
-import redis.clients.jedis.Transaction;
 
 public class Leaderboard {
 
-	public static final String VERSION = "2.0.2";
+	public static final String VERSION = "3.0.0";
 	public static final int DEFAULT_PAGE_SIZE = 25;
 	public static final String DEFAULT_REDIS_HOST = "localhost";
 	public static final int DEFAULT_REDIS_PORT = 6379;
+	public static final int DEFAULT_REMOVAL_CHUNK_SIZE = 1000;
+	public static final int DEFAULT_SNAPSHOT_RETENTION = 1;
+	public static final int DEFAULT_SNAPSHOT_MAX_MEMBERS = 1000;
   	public static final List<LeaderData> EMPTY_LEADER_DATA = Collections.emptyList();
 
-  	private Jedis _jedis;
+  	private RedisTransport _transport;
 	private String _leaderboardName;
 	private int _pageSize;
+	private boolean _reverse;
+	private boolean _publishChanges;
+	private WriteMode _writeMode = WriteMode.ALWAYS;
+	private int _maxMembers;
+	private CompositeScoreFormat _scoreFormat;
+	private boolean _trackRankChanges;
+	private int _snapshotRetention = DEFAULT_SNAPSHOT_RETENTION;
+	private int _snapshotMaxMembers = DEFAULT_SNAPSHOT_MAX_MEMBERS;
+	private LeaderboardReplica _replica;
 
 	/**
 	 * Create a leaderboard using the default host, default port, and default page size
@@ -36,7 +46,7 @@ public class Leaderboard {
 	 * @param pageSize Page size
 	 */
 	public Leaderboard(String leaderboardName, String host, int port, int pageSize) {
-		this(leaderboardName, pageSize, new Jedis(host, port));
+		this(leaderboardName, pageSize, false, new JedisTransport(host, port));
 	}
 
 	/**
@@ -47,14 +57,39 @@ public class Leaderboard {
 	 * @param redisConnection Redis connection
 	 */
 	public Leaderboard(String leaderboardName, int pageSize, Jedis redisConnection) {
+		this(leaderboardName, pageSize, false, redisConnection);
+	}
+
+	/**
+	 * Create a leaderboard with a given name, page size, sort order and existing Redis connection
+	 *
+	 * @param leaderboardName Name of the leaderboard
+	 * @param pageSize Page size
+	 * @param reverse Rank lowest scores first if true, highest scores first otherwise
+	 * @param redisConnection Redis connection
+	 */
+	public Leaderboard(String leaderboardName, int pageSize, boolean reverse, Jedis redisConnection) {
+		this(leaderboardName, pageSize, reverse, new JedisTransport(redisConnection));
+	}
+
+	/**
+	 * Create a leaderboard with a given name, page size, sort order and Redis transport
+	 *
+	 * @param leaderboardName Name of the leaderboard
+	 * @param pageSize Page size
+	 * @param reverse Rank lowest scores first if true, highest scores first otherwise
+	 * @param transport Redis transport
+	 */
+	public Leaderboard(String leaderboardName, int pageSize, boolean reverse, RedisTransport transport) {
 	    _leaderboardName = leaderboardName;
 	    _pageSize = pageSize;
+	    _reverse = reverse;
 
 	    if (_pageSize < 1) {
 	        _pageSize = DEFAULT_PAGE_SIZE;
 	    }
 
-	    _jedis = redisConnection;
+	    _transport = transport;
 	}
 
 	/**
@@ -81,7 +116,38 @@ public class Leaderboard {
 	 * @return Page size
 	 */
 	public long deleteLeaderboardNamed(String leaderboardName) {
-		return _jedis.del(leaderboardName);
+		RedisBatch batch = _transport.batch(_publishChanges);
+		batch.del(keysFor(leaderboardName));
+		if (_publishChanges) {
+			batch.publish(LeaderboardReplica.channelFor(leaderboardName), LeaderboardReplica.resyncMessage());
+		}
+		return (Long) batch.execute().get(0);
+	}
+
+	/**
+	 * Delete the current leaderboard without blocking Redis
+	 *
+	 * @return Number of members removed
+	 */
+	public long unlinkLeaderboard() {
+		return unlinkLeaderboardNamed(_leaderboardName);
+	}
+
+	/**
+	 * Delete the named leaderboard without blocking Redis. The leaderboard
+	 * disappears at once and Redis reclaims its memory in the background.
+	 *
+	 * @param leaderboardName Leaderboard
+	 * @return Number of members removed
+	 */
+	public long unlinkLeaderboardNamed(String leaderboardName) {
+		RedisBatch batch = _transport.batch(true);
+		batch.zcard(leaderboardName);
+		batch.unlink(keysFor(leaderboardName));
+		if (_publishChanges) {
+			batch.publish(LeaderboardReplica.channelFor(leaderboardName), LeaderboardReplica.resyncMessage());
+		}
+		return (Long) batch.execute().get(0);
 	}
 
 	/**
@@ -106,11 +172,252 @@ public class Leaderboard {
 		_pageSize = pageSize;
 	}
 
+	/**
+	 * Check whether the leaderboard ranks lowest scores first
+	 *
+	 * @return true if lowest scores rank first, false if highest scores rank first
+	 */
+	public boolean isReverse() {
+		return _reverse;
+	}
+
+	/**
+	 * Set the sort order of the leaderboard
+	 *
+	 * @param reverse Rank lowest scores first if true, highest scores first otherwise
+	 */
+	public void setReverse(boolean reverse) {
+		_reverse = reverse;
+	}
+
+	/**
+	 * Get the default write mode used when ranking members
+	 *
+	 * @return Write mode
+	 */
+	public WriteMode getWriteMode() {
+		return _writeMode;
+	}
+
+	/**
+	 * Set the default write mode used when ranking members
+	 *
+	 * @param writeMode Write mode
+	 */
+	public void setWriteMode(WriteMode writeMode) {
+		if (writeMode == null) {
+			writeMode = WriteMode.ALWAYS;
+		}
+
+		_writeMode = writeMode;
+	}
+
+	/**
+	 * Get the maximum number of members kept in a leaderboard
+	 *
+	 * @return Maximum number of members, or 0 if unbounded
+	 */
+	public int getMaxMembers() {
+		return _maxMembers;
+	}
+
+	/**
+	 * Set the maximum number of members kept in a leaderboard. Members ranked
+	 * below the maximum are removed atomically with each write.
+	 *
+	 * @param maxMembers Maximum number of members, or 0 for unbounded
+	 */
+	public void setMaxMembers(int maxMembers) {
+		if (maxMembers < 1) {
+			maxMembers = 0;
+		}
+
+		_maxMembers = maxMembers;
+	}
+
+	/**
+	 * Get the composite score format
+	 *
+	 * @return Composite score format, or null if scores are plain values
+	 */
+	public CompositeScoreFormat getScoreFormat() {
+		return _scoreFormat;
+	}
+
+	/**
+	 * Set the composite score format used by rankMemberWithComponentsIn. Page reads
+	 * decode the components of each score into LeaderData.
+	 *
+	 * @param scoreFormat Composite score format, or null if scores are plain values
+	 */
+	public void setScoreFormat(CompositeScoreFormat scoreFormat) {
+		_scoreFormat = scoreFormat;
+	}
+
+	/**
+	 * Check whether rank changes are tracked
+	 *
+	 * @return true if rank changes are tracked, false otherwise
+	 */
+	public boolean isTrackingRankChanges() {
+		return _trackRankChanges;
+	}
+
+	/**
+	 * Track rank changes. Each write records the member's previous score and rank
+	 * atomically with the write, and page reads attach the previous score and rank
+	 * and the rank change since the last snapshot to each LeaderData. The record of
+	 * each member is removed with the member, including members trimmed by setMaxMembers,
+	 * so the history never outgrows the leaderboard.
+	 *
+	 * @param trackRankChanges Track rank changes
+	 */
+	public void setTrackRankChanges(boolean trackRankChanges) {
+		_trackRankChanges = trackRankChanges;
+	}
+
+	/**
+	 * Get the number of rank snapshots kept
+	 *
+	 * @return Number of rank snapshots kept
+	 */
+	public int getSnapshotRetention() {
+		return _snapshotRetention;
+	}
+
+	/**
+	 * Set the number of rank snapshots kept. Older snapshots are removed as new ones are taken.
+	 * Rank changes are measured against the latest snapshot only; older generations are kept
+	 * for callers that read them directly.
+	 *
+	 * @param snapshotRetention Number of rank snapshots kept
+	 */
+	public void setSnapshotRetention(int snapshotRetention) {
+		if (snapshotRetention < 1) {
+			snapshotRetention = DEFAULT_SNAPSHOT_RETENTION;
+		}
+
+		_snapshotRetention = snapshotRetention;
+	}
+
+	/**
+	 * Get the number of top members kept in each rank snapshot
+	 *
+	 * @return Number of members, or 0 if snapshots hold every member
+	 */
+	public int getSnapshotMaxMembers() {
+		return _snapshotMaxMembers;
+	}
+
+	/**
+	 * Set the number of top members kept in each rank snapshot. Members ranked
+	 * below it have no rank change. Holding every member copies the whole leaderboard
+	 * in a single command that blocks Redis for O(N log N), so keep it bounded on
+	 * large leaderboards.
+	 *
+	 * @param snapshotMaxMembers Number of members, or 0 to hold every member
+	 */
+	public void setSnapshotMaxMembers(int snapshotMaxMembers) {
+		if (snapshotMaxMembers < 1) {
+			snapshotMaxMembers = 0;
+		}
+
+		_snapshotMaxMembers = snapshotMaxMembers;
+	}
+
+	/**
+	 * Take a rank snapshot of the current leaderboard
+	 *
+	 * @return Number of members in the snapshot
+	 */
+	public long snapshotRanks() {
+		return snapshotRanksIn(_leaderboardName);
+	}
+
+	/**
+	 * Take a rank snapshot of the named leaderboard. Rank changes in page reads are
+	 * measured against the latest snapshot, so call this periodically, e.g. daily.
+	 * Only the top M members are copied, in O(log N + M) inside Redis for a leaderboard
+	 * of N members, unless setSnapshotMaxMembers is set to hold every member.
+	 *
+	 * @param leaderboardName Leaderboard
+	 * @return Number of members in the snapshot
+	 */
+	public long snapshotRanksIn(String leaderboardName) {
+		RedisBatch existsBatch = _transport.batch(false);
+		for (int generation = 0; generation < _snapshotRetention - 1; generation++) {
+			existsBatch.exists(snapshotKeyFor(leaderboardName, generation));
+		}
+		List<Object> exists = existsBatch.execute();
+
+		// Drop the oldest snapshot, then shift the others back a generation
+		RedisBatch batch = _transport.batch(true);
+		batch.unlink(snapshotKeyFor(leaderboardName, _snapshotRetention - 1));
+		for (int generation = _snapshotRetention - 2; generation >= 0; generation--) {
+			if ((Boolean) exists.get(generation)) {
+				batch.rename(snapshotKeyFor(leaderboardName, generation), snapshotKeyFor(leaderboardName, generation + 1));
+			}
+		}
+		batch.copy(leaderboardName, snapshotKeyFor(leaderboardName, 0), _snapshotMaxMembers, _reverse);
+		List<Object> response = batch.execute();
+
+		return (Long) response.get(response.size() - 1);
+	}
+
+	/**
+	 * Check whether writes are published to the change feed
+	 *
+	 * @return true if writes are published to the change feed, false otherwise
+	 */
+	public boolean isPublishingChanges() {
+		return _publishChanges;
+	}
+
+	/**
+	 * Publish writes to the change feed so that a LeaderboardReplica can follow them.
+	 * Each change is published atomically with the write itself.
+	 *
+	 * @param publishChanges Publish writes to the change feed
+	 */
+	public void setPublishChanges(boolean publishChanges) {
+		_publishChanges = publishChanges;
+	}
+
+	/**
+	 * Get the replica used to serve top pages locally
+	 *
+	 * @return Replica or null if no replica is set
+	 */
+	public LeaderboardReplica getReplica() {
+		return _replica;
+	}
+
+	/**
+	 * Serve pages of leadersIn that fall within the top members of the replica locally.
+	 * Pages are read from Redis while the replica is not in sync.
+	 *
+	 * @param replica Replica or null to read every page from Redis
+	 */
+	public void setReplica(LeaderboardReplica replica) {
+		if (replica != null && replica.isReverse() != _reverse) {
+			throw new IllegalArgumentException("Replica sort order does not match the leaderboard sort order");
+		}
+
+		_replica = replica;
+	}
+
 	/**
 	 * Disconnect from the Redis instance
 	 */
 	public void disconnect() {
-		_jedis.disconnect();
+		_transport.disconnect();
+	}
+
+	/**
+	 * Drop the connection to the Redis instance so the next operation opens a new one
+	 */
+	public void reconnect() {
+		_transport.reconnect();
 	}
 
 	/**
@@ -129,7 +436,7 @@ public class Leaderboard {
 	 * @return Total # of members in the leaderboard
 	 */
 	public long totalMembersIn(String leaderboardName) {
-		return _jedis.zcard(leaderboardName);
+		return _transport.zcard(leaderboardName);
 	}
 
 	/**
@@ -176,7 +483,7 @@ public class Leaderboard {
 	 * @return Total # of members in the named leaderboard in a score range
 	 */
 	public long totalMembersInScoreRangeIn(String leaderboardName, double minScore, double maxScore) {
-		return _jedis.zcount(leaderboardName, minScore, maxScore);
+		return _transport.zcount(leaderboardName, minScore, maxScore);
 	}
 
 	/**
@@ -190,6 +497,18 @@ public class Leaderboard {
 		return this.rankMemberIn(_leaderboardName, member, score);
 	}
 
+	/**
+	 * Rank a member in the current leaderboard using the given write mode
+	 *
+	 * @param member Member
+	 * @param score Score
+	 * @param writeMode Write mode
+	 * @return 1 if the member was added, 0 otherwise
+	 */
+	public long rankMember(String member, double score, WriteMode writeMode) {
+		return this.rankMemberIn(_leaderboardName, member, score, writeMode);
+	}
+
 	/**
 	 * Rank a member in the named leaderboard
 	 *
@@ -199,7 +518,47 @@ public class Leaderboard {
 	 * @return
 	 */
 	public long rankMemberIn(String leaderboardName, String member, double score) {
-		return _jedis.zadd(leaderboardName, score, member);
+		return rankMemberIn(leaderboardName, member, score, _writeMode);
+	}
+
+	/**
+	 * Rank a member in the named leaderboard using the given write mode
+	 *
+	 * @param leaderboardName Leaderboard
+	 * @param member Member
+	 * @param score Score
+	 * @param writeMode Write mode
+	 * @return 1 if the member was added, 0 otherwise
+	 */
+	public long rankMemberIn(String leaderboardName, String member, double score, WriteMode writeMode) {
+		return _transport.addScore(leaderboardName, member, score, writeMode, writeOptionsFor(leaderboardName));
+	}
+
+	/**
+	 * Rank a member in the current leaderboard with a composite score
+	 *
+	 * @param member Member
+	 * @param components Score components, primary score first
+	 * @return 1 if the member was added, 0 otherwise
+	 */
+	public long rankMemberWithComponents(String member, long... components) {
+		return rankMemberWithComponentsIn(_leaderboardName, member, components);
+	}
+
+	/**
+	 * Rank a member in the named leaderboard with a composite score
+	 *
+	 * @param leaderboardName Leaderboard
+	 * @param member Member
+	 * @param components Score components, primary score first
+	 * @return 1 if the member was added, 0 otherwise
+	 */
+	public long rankMemberWithComponentsIn(String leaderboardName, String member, long... components) {
+		if (_scoreFormat == null) {
+			throw new IllegalStateException("No composite score format is set");
+		}
+
+		return rankMemberIn(leaderboardName, member, _scoreFormat.encode(components));
 	}
 
 	/**
@@ -222,7 +581,7 @@ public class Leaderboard {
      * @return Member score
 	 */
 	public Double scoreForIn(String leaderboardName, String member) {
-		return _jedis.zscore(leaderboardName, member);
+		return _transport.zscore(leaderboardName, member);
 	}
 
 	/**
@@ -245,7 +604,7 @@ public class Leaderboard {
 	 * @return Updated score
 	 */
 	public double changeScoreForMemberIn(String leaderboardName, String member, double delta) {
-		return _jedis.zincrby(leaderboardName, delta, member);
+		return _transport.incrementScore(leaderboardName, member, delta, writeOptionsFor(leaderboardName));
 	}
 
 	/**
@@ -266,7 +625,7 @@ public class Leaderboard {
 	 * @return true if member is in the named leaderboard, false otherwise
 	 */
 	public boolean checkMemberIn(String leaderboardName, String member) {
-		return !(_jedis.zscore(leaderboardName, member) == null);
+		return !(_transport.zscore(leaderboardName, member) == null);
 	}
 
 	/**
@@ -294,7 +653,7 @@ public class Leaderboard {
 
         Long result = null;
 
-        Long redisRank = _jedis.zrevrank(leaderboardName, member);
+        Long redisRank = _transport.rank(leaderboardName, member, _reverse);
 
         if (redisRank != null) {
             if (useZeroIndexForRank) {
@@ -327,7 +686,74 @@ public class Leaderboard {
 	 * @return
 	 */
 	public long removeMembersInScoreRangeIn(String leaderboardName, double minScore, double maxScore) {
-		return _jedis.zremrangeByScore(leaderboardName, minScore, maxScore);
+		return _transport.removeRangeByScore(leaderboardName, minScore, maxScore, writeOptionsFor(leaderboardName));
+	}
+
+	/**
+	 * Remove members from the current leaderboard
+	 *
+	 * @param members List of member names
+	 * @return Number of members removed
+	 */
+	public long removeMembers(List<String> members) {
+		return removeMembersIn(_leaderboardName, members);
+	}
+
+	/**
+	 * Remove members from the named leaderboard, a chunk of members per command.
+	 * Each chunk is removed and published to the change feed in one transaction.
+	 *
+	 * @param leaderboardName Leaderboard
+	 * @param members List of member names
+	 * @return Number of members removed
+	 */
+	public long removeMembersIn(String leaderboardName, List<String> members) {
+		String channel = LeaderboardReplica.channelFor(leaderboardName);
+		long removed = 0;
+
+		for (int chunkStart = 0; chunkStart < members.size(); chunkStart += DEFAULT_REMOVAL_CHUNK_SIZE) {
+			List<String> chunk = members.subList(chunkStart, Math.min(chunkStart + DEFAULT_REMOVAL_CHUNK_SIZE, members.size()));
+
+			RedisBatch batch = _transport.batch(_publishChanges || _trackRankChanges);
+			batch.zrem(leaderboardName, chunk);
+			if (_trackRankChanges) {
+				batch.hdel(previousKeyFor(leaderboardName), chunk);
+			}
+			if (_publishChanges) {
+				for (String member : chunk) {
+					batch.publish(channel, LeaderboardReplica.memberRemovedMessage(member));
+				}
+			}
+
+			removed += (Long) batch.execute().get(0);
+		}
+
+		return removed;
+	}
+
+	/**
+	 * Remove members ranked outside the given rank from the current leaderboard
+	 *
+	 * @param rank Last rank to keep
+	 * @return Number of members removed
+	 */
+	public long removeMembersOutsideRank(int rank) {
+		return removeMembersOutsideRankIn(_leaderboardName, rank);
+	}
+
+	/**
+	 * Remove members ranked outside the given rank from the named leaderboard
+	 *
+	 * @param leaderboardName Leaderboard
+	 * @param rank Last rank to keep
+	 * @return Number of members removed
+	 */
+	public long removeMembersOutsideRankIn(String leaderboardName, int rank) {
+		if (rank < 0) {
+			rank = 0;
+		}
+
+		return _transport.removeOutsideRank(leaderboardName, rank, writeOptionsFor(leaderboardName));
 	}
 
 	/**
@@ -352,10 +778,10 @@ public class Leaderboard {
 	public Hashtable<String, Object> scoreAndRankForIn(String leaderboardName, String member, boolean useZeroIndexForRank) {
 		Hashtable<String, Object> data = new Hashtable<String, Object>();
 
-		Transaction transaction = _jedis.multi();
-        transaction.zscore(leaderboardName, member);
-        transaction.zrevrank(leaderboardName, member);
-        List<Object> response = transaction.exec();
+		RedisBatch batch = _transport.batch(true);
+        batch.zscore(leaderboardName, member);
+        batch.rank(leaderboardName, member, _reverse);
+        List<Object> response = batch.execute();
 
 		data.put("member", member);
 		data.put("score", response.get(0));
@@ -397,8 +823,17 @@ public class Leaderboard {
 			pageSize = DEFAULT_PAGE_SIZE;
 		}
 
-		if (currentPage > totalPagesIn(leaderboardName, pageSize)) {
-			currentPage = totalPagesIn(leaderboardName, pageSize);
+		if (_replica != null && _replica.getLeaderboardName().equals(leaderboardName)) {
+			List<LeaderData> replicatedLeaderData = _replica.leadersIn(currentPage, useZeroIndexForRank, pageSize);
+			if (replicatedLeaderData != null) {
+				attachRankChanges(leaderboardName, replicatedLeaderData, useZeroIndexForRank);
+				return decodeScoreComponents(replicatedLeaderData);
+			}
+		}
+
+		int totalPages = totalPagesIn(leaderboardName, pageSize);
+		if (currentPage > totalPages) {
+			currentPage = totalPages;
 		}
 
 		int indexForRedis = currentPage - 1;
@@ -408,8 +843,9 @@ public class Leaderboard {
 		}
 		int endingOffset = (startingOffset + pageSize) - 1;
 
-		Set<Tuple> rawLeaderData = _jedis.zrevrangeWithScores(leaderboardName, startingOffset, endingOffset);
-		return massageLeaderData(leaderboardName, rawLeaderData, useZeroIndexForRank);
+		List<LeaderData> leaderData = rangeOfLeaders(leaderboardName, startingOffset, endingOffset, useZeroIndexForRank);
+		attachRankChanges(leaderboardName, leaderData, useZeroIndexForRank);
+		return leaderData;
 	}
 
 	/**
@@ -433,7 +869,7 @@ public class Leaderboard {
 	 * @return Leaders around a given member in the named leaderboard as a list of LeaderData
 	 */
 	public List<LeaderData> aroundMeIn(String leaderboardName, String member, boolean useZeroIndexForRank, int pageSize) {
-		Long reverseRankForMember = _jedis.zrevrank(leaderboardName, member);
+		Long reverseRankForMember = _transport.rank(leaderboardName, member, _reverse);
 
         if (reverseRankForMember == null) {
             return EMPTY_LEADER_DATA;
@@ -450,8 +886,9 @@ public class Leaderboard {
 		}
 		int endingOffset = (startingOffset + pageSize) - 1;
 
-		Set<Tuple> rawLeaderData = _jedis.zrevrangeWithScores(leaderboardName, startingOffset, endingOffset);
-		return massageLeaderData(leaderboardName, rawLeaderData, useZeroIndexForRank);
+		List<LeaderData> leaderData = rangeOfLeaders(leaderboardName, startingOffset, endingOffset, useZeroIndexForRank);
+		attachRankChanges(leaderboardName, leaderData, useZeroIndexForRank);
+		return leaderData;
 	}
 
 	/**
@@ -474,42 +911,155 @@ public class Leaderboard {
 	 * @return List of LeaderData objects for a list of members in the named leaderboard
 	 */
 	public List<LeaderData> rankedInListIn(String leaderboardName, List<String> members, boolean useZeroIndexForRank) {
-		List<LeaderData> leaderData = new ArrayList<LeaderData>();
+		List<LeaderData> leaderData = new ArrayList<LeaderData>(members.size());
+		if (members.isEmpty()) {
+			return leaderData;
+		}
+
+		// Fetch every score in one command and every rank in the same round trip
+		RedisBatch batch = _transport.batch(false);
+		batch.zmscore(leaderboardName, members);
+		for (String member : members) {
+			batch.rank(leaderboardName, member, _reverse);
+		}
+		List<Object> response = batch.execute();
+
+		List<?> scores = (List<?>) response.get(0);
+		for (int i = 0; i < members.size(); i++) {
+			Double score = (Double) scores.get(i);
+			Long redisRank = (Long) response.get(i + 1);
+
+			if (score != null && redisRank != null) {
+				long rank = useZeroIndexForRank ? redisRank : redisRank + 1;
+				LeaderData memberData = new LeaderData(members.get(i), score, rank);
+				leaderData.add(memberData);
+			}
+		}
+
+		attachRankChanges(leaderboardName, leaderData, useZeroIndexForRank);
+		return decodeScoreComponents(leaderData);
+	}
+
+	/**
+	 * Side effects of a score write in the named leaderboard
+	 *
+	 * @param leaderboardName Leaderboard
+	 * @return Write options
+	 */
+	private WriteOptions writeOptionsFor(String leaderboardName) {
+		return new WriteOptions(_reverse, _maxMembers,
+				_trackRankChanges ? previousKeyFor(leaderboardName) : null,
+				_publishChanges ? LeaderboardReplica.channelFor(leaderboardName) : null);
+	}
 
-		Iterator<String> membersIterator = members.iterator();
-		while (membersIterator.hasNext()) {
-			String member = membersIterator.next();
-            Double score = scoreForIn(leaderboardName, member);
+	/**
+	 * Attach the previous score and rank and the rank change since the last snapshot to each leader
+	 *
+	 * @param leaderboardName Leaderboard
+	 * @param leaderData List of LeaderData objects
+	 * @param useZeroIndexForRank Use zero-based index for rank
+	 */
+	private void attachRankChanges(String leaderboardName, List<LeaderData> leaderData, boolean useZeroIndexForRank) {
+		if (!_trackRankChanges || leaderData.isEmpty()) {
+			return;
+		}
 
-            if (score != null) {
+		List<String> members = new ArrayList<String>(leaderData.size());
+		for (LeaderData leader : leaderData) {
+			members.add(leader.getMember());
+		}
 
-                long rank = rankForIn(leaderboardName, member, useZeroIndexForRank);
-                LeaderData memberData = new LeaderData(member, score, rank);
-		    	leaderData.add(memberData);
-            }
+		// Fetch the whole page of history in a single round trip
+		String snapshotKey = snapshotKeyFor(leaderboardName, 0);
+		RedisBatch batch = _transport.batch(false);
+		batch.hmget(previousKeyFor(leaderboardName), members);
+		for (String member : members) {
+			batch.rank(snapshotKey, member, _reverse);
+		}
+		List<Object> response = batch.execute();
+
+		long rankOffset = useZeroIndexForRank ? 0 : 1;
+		List<?> previous = (List<?>) response.get(0);
+		for (int i = 0; i < members.size(); i++) {
+			LeaderData leader = leaderData.get(i);
+
+			String previousState = (String) previous.get(i);
+			if (previousState != null) {
+				int separator = previousState.indexOf(' ');
+				leader.setPreviousScore(LeaderboardReplica.parseScore(previousState.substring(0, separator)));
+				leader.setPreviousRank(Long.parseLong(previousState.substring(separator + 1)) + rankOffset);
+			}
+
+			Long snapshotRank = (Long) response.get(i + 1);
+			if (snapshotRank != null) {
+				leader.setRankDelta(snapshotRank - (leader.getRank() - rankOffset));
+			}
 		}
+	}
 
-		return leaderData;
+	private String previousKeyFor(String leaderboardName) {
+		return leaderboardName + ":previous";
+	}
+
+	private String snapshotKeyFor(String leaderboardName, int generation) {
+		return leaderboardName + ":snapshot:" + generation;
 	}
 
 	/**
-	 * Massage the leaderboard data into LeaderData objects
+	 * Keys holding the named leaderboard and its rank history
 	 *
 	 * @param leaderboardName Leaderboard
-	 * @param memberData Tuple of member and score
+	 * @return Keys
+	 */
+	private String[] keysFor(String leaderboardName) {
+		if (!_trackRankChanges) {
+			return new String[] {leaderboardName};
+		}
+
+		String[] keys = new String[_snapshotRetention + 2];
+		keys[0] = leaderboardName;
+		keys[1] = previousKeyFor(leaderboardName);
+		for (int generation = 0; generation < _snapshotRetention; generation++) {
+			keys[generation + 2] = snapshotKeyFor(leaderboardName, generation);
+		}
+
+		return keys;
+	}
+
+	/**
+	 * Retrieve a range of leaders, honoring the sort order
+	 *
+	 * Ranks are derived from the position of each member in the range, so no
+	 * additional rank lookups are made against Redis.
+	 *
+	 * @param leaderboardName Leaderboard
+	 * @param startingOffset 0-based rank of the first member in the range
+	 * @param endingOffset 0-based rank of the last member in the range
 	 * @param useZeroIndexForRank Use zero-based index for rank
 	 * @return List of LeaderData objects which contains member, score and rank
 	 */
-	private List<LeaderData> massageLeaderData(String leaderboardName, Set<Tuple> memberData, boolean useZeroIndexForRank) {
-		List<LeaderData> leaderData = new ArrayList<LeaderData>();
+	private List<LeaderData> rangeOfLeaders(String leaderboardName, int startingOffset, int endingOffset, boolean useZeroIndexForRank) {
+		long firstRank = useZeroIndexForRank ? startingOffset : startingOffset + 1;
+		return decodeScoreComponents(_transport.range(leaderboardName, startingOffset, endingOffset, _reverse, firstRank));
+	}
+
+	/**
+	 * Decode the composite score components of each leader, if a composite score format is set
+	 *
+	 * @param leaderData List of LeaderData objects
+	 * @return The same list of LeaderData objects
+	 */
+	private List<LeaderData> decodeScoreComponents(List<LeaderData> leaderData) {
+		if (_scoreFormat == null) {
+			return leaderData;
+		}
 
-		Iterator<Tuple> memberDataIterator = memberData.iterator();
-		while (memberDataIterator.hasNext()) {
-			Tuple memberDataTuple = memberDataIterator.next();
-			LeaderData leaderDataItem = new LeaderData(memberDataTuple.getElement(), memberDataTuple.getScore(), rankForIn(leaderboardName, memberDataTuple.getElement(), useZeroIndexForRank));
-			leaderData.add(leaderDataItem);
+		for (LeaderData leader : leaderData) {
+			if (_scoreFormat.isEncoded(leader.getScore())) {
+				leader.setScoreComponents(_scoreFormat.decode(leader.getScore()));
+			}
 		}
 
 		return leaderData;
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,530 @@
+package com.agoragames.leaderboard;
+
+import java.util.*;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPubSub;
+import redis.clients.jedis.exceptions.JedisException;
+
+public class LeaderboardReplica {
+
+	public static final int DEFAULT_SIZE = 100;
+	public static final long RECONNECT_DELAY_MILLIS = 1000;
+
+	static final String SCORE_CHANGED = "S";
+	static final String MEMBER_REMOVED = "D";
+	static final String SCORE_RANGE_REMOVED = "R";
+	static final String TRIMMED = "T";
+	static final String RESYNC = "X";
+
+	private RedisTransport _transport;
+	private Jedis _subscriberJedis;
+	private String _leaderboardName;
+	private int _size;
+	private boolean _reverse;
+
+	private TreeSet<Entry> _leaders;
+	private Map<String, Entry> _entries;
+	private boolean _complete;
+	private boolean _synced;
+	private boolean _resyncing;
+	private volatile boolean _running;
+	private Thread _subscriberThread;
+	private volatile ChangeListener _changeListener;
+
+	/**
+	 * Create a replica of the top members of a leaderboard using the given host and port
+	 *
+	 * @param leaderboardName Name of the leaderboard
+	 * @param size Number of top members to hold locally
+	 * @param reverse Rank lowest scores first if true, highest scores first otherwise
+	 * @param host Redis host
+	 * @param port Redis port
+	 */
+	public LeaderboardReplica(String leaderboardName, int size, boolean reverse, String host, int port) {
+		this(leaderboardName, size, reverse, new JedisTransport(host, port), new Jedis(host, port));
+	}
+
+	/**
+	 * Create a replica of the top members of a leaderboard using existing Redis connections.
+	 * The subscriber connection is dedicated to the change feed and must not be shared.
+	 *
+	 * @param leaderboardName Name of the leaderboard
+	 * @param size Number of top members to hold locally
+	 * @param reverse Rank lowest scores first if true, highest scores first otherwise
+	 * @param redisConnection Redis connection used to bootstrap and re-sync
+	 * @param subscriberConnection Redis connection used to subscribe to the change feed
+	 */
+	public LeaderboardReplica(String leaderboardName, int size, boolean reverse, Jedis redisConnection, Jedis subscriberConnection) {
+		this(leaderboardName, size, reverse, new JedisTransport(redisConnection), subscriberConnection);
+	}
+
+	/**
+	 * Create a replica of the top members of a leaderboard using an existing Redis transport.
+	 * The subscriber connection is dedicated to the change feed and must not be shared.
+	 *
+	 * @param leaderboardName Name of the leaderboard
+	 * @param size Number of top members to hold locally
+	 * @param reverse Rank lowest scores first if true, highest scores first otherwise
+	 * @param transport Redis transport used to bootstrap and re-sync
+	 * @param subscriberConnection Redis connection used to subscribe to the change feed
+	 */
+	public LeaderboardReplica(String leaderboardName, int size, boolean reverse, RedisTransport transport, Jedis subscriberConnection) {
+		_leaderboardName = leaderboardName;
+		_size = size;
+		_reverse = reverse;
+
+		if (_size < 1) {
+			_size = DEFAULT_SIZE;
+		}
+
+		_transport = transport;
+		_subscriberJedis = subscriberConnection;
+		_leaders = new TreeSet<Entry>(new EntryComparator());
+		_entries = new HashMap<String, Entry>();
+	}
+
+	/**
+	 * Get the leaderboard name
+	 *
+	 * @return Leaderboard name
+	 */
+	public String getLeaderboardName() {
+		return _leaderboardName;
+	}
+
+	/**
+	 * Get the number of top members held locally
+	 *
+	 * @return Number of top members held locally
+	 */
+	public int getSize() {
+		return _size;
+	}
+
+	/**
+	 * Check whether the replica ranks lowest scores first
+	 *
+	 * @return true if lowest scores rank first, false if highest scores rank first
+	 */
+	public boolean isReverse() {
+		return _reverse;
+	}
+
+	/**
+	 * Check whether the replica is subscribed to the change feed and holds a current copy
+	 *
+	 * @return true if the replica is in sync, false otherwise
+	 */
+	public synchronized boolean isSynced() {
+		return _synced;
+	}
+
+	/**
+	 * Subscribe to the change feed and bootstrap the replica in the background
+	 */
+	public synchronized void start() {
+		if (_running) {
+			return;
+		}
+
+		_running = true;
+		_subscriberThread = new Thread(new Runnable() {
+			public void run() {
+				subscribe();
+			}
+		}, "leaderboard-replica-" + _leaderboardName);
+		_subscriberThread.setDaemon(true);
+		_subscriberThread.start();
+	}
+
+	/**
+	 * Wait for the replica to become in sync
+	 *
+	 * @param timeoutMillis Maximum time to wait in milliseconds
+	 * @return true if the replica is in sync, false if the timeout elapsed first
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public synchronized boolean awaitSync(long timeoutMillis) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + timeoutMillis;
+		while (!_synced) {
+			long remaining = deadline - System.currentTimeMillis();
+			if (remaining <= 0) {
+				return false;
+			}
+			wait(remaining);
+		}
+
+		return true;
+	}
+
+	/**
+	 * Unsubscribe from the change feed and disconnect from the Redis instance
+	 */
+	public void stop() {
+		Thread subscriberThread;
+		synchronized (this) {
+			_running = false;
+			_synced = false;
+			subscriberThread = _subscriberThread;
+			_subscriberThread = null;
+		}
+
+		ChangeListener changeListener = _changeListener;
+		if (changeListener != null && changeListener.isSubscribed()) {
+			changeListener.unsubscribe();
+		}
+
+		if (subscriberThread != null) {
+			try {
+				subscriberThread.join(RECONNECT_DELAY_MILLIS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		_subscriberJedis.disconnect();
+		_transport.disconnect();
+	}
+
+	/**
+	 * Retrieve a page of leaders from the replica
+	 *
+	 * @param currentPage Page
+	 * @param useZeroIndexForRank Use zero-based index for rank
+	 * @param pageSize Page size
+	 * @return Page of leaders as a list of LeaderData, or null if the page cannot be served locally
+	 */
+	public synchronized List<LeaderData> leadersIn(int currentPage, boolean useZeroIndexForRank, int pageSize) {
+		if (!_synced || _resyncing) {
+			return null;
+		}
+
+		if (currentPage < 1) {
+			currentPage = 1;
+		}
+
+		if (pageSize < 1) {
+			pageSize = Leaderboard.DEFAULT_PAGE_SIZE;
+		}
+
+		if (_complete) {
+			int totalPages = (int) Math.ceil((float) _leaders.size() / (float) pageSize);
+			if (currentPage > totalPages) {
+				currentPage = totalPages;
+			}
+		}
+
+		int startingOffset = (currentPage - 1) * pageSize;
+		if (startingOffset < 0) {
+			startingOffset = 0;
+		}
+
+		if (!_complete && startingOffset + pageSize > _size) {
+			return null;
+		}
+
+		List<LeaderData> leaderData = new ArrayList<LeaderData>(pageSize);
+		long rank = useZeroIndexForRank ? startingOffset : startingOffset + 1;
+		int offset = 0;
+		for (Entry entry : _leaders) {
+			if (offset++ < startingOffset) {
+				continue;
+			}
+			if (leaderData.size() == pageSize) {
+				break;
+			}
+			leaderData.add(new LeaderData(entry.member, entry.score, rank++));
+		}
+
+		return leaderData;
+	}
+
+	/**
+	 * Name of the channel the change feed for a leaderboard is published on
+	 *
+	 * @param leaderboardName Leaderboard
+	 * @return Channel name
+	 */
+	public static String channelFor(String leaderboardName) {
+		return leaderboardName + ":changes";
+	}
+
+	static String memberRemovedMessage(String member) {
+		return MEMBER_REMOVED + " " + member;
+	}
+
+	static String scoreRangeRemovedMessage(double minScore, double maxScore) {
+		return SCORE_RANGE_REMOVED + " " + minScore + " " + maxScore;
+	}
+
+	static String trimmedMessage(int maxMembers) {
+		return TRIMMED + " " + maxMembers;
+	}
+
+	static String resyncMessage() {
+		return RESYNC;
+	}
+
+	/**
+	 * Parse a score as formatted by Redis or by Java
+	 *
+	 * @param score Score
+	 * @return Score as a double
+	 */
+	static double parseScore(String score) {
+		if ("inf".equals(score) || "+inf".equals(score)) {
+			return Double.POSITIVE_INFINITY;
+		}
+		if ("-inf".equals(score)) {
+			return Double.NEGATIVE_INFINITY;
+		}
+
+		return Double.parseDouble(score);
+	}
+
+	/**
+	 * Subscribe to the change feed, reconnecting until the replica is stopped
+	 */
+	private void subscribe() {
+		while (_running) {
+			try {
+				_changeListener = new ChangeListener();
+				_subscriberJedis.subscribe(_changeListener, channelFor(_leaderboardName));
+			} catch (JedisException e) {
+				if (!awaitReconnect()) {
+					return;
+				}
+			} catch (RedisConnectionException e) {
+				// Raised by a re-sync read on the transport
+				if (!awaitReconnect()) {
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Drop both connections and wait before subscribing again
+	 *
+	 * @return false if interrupted while waiting
+	 */
+	private boolean awaitReconnect() {
+		markUnsynced();
+		_subscriberJedis.disconnect();
+		_transport.reconnect();
+
+		try {
+			Thread.sleep(RECONNECT_DELAY_MILLIS);
+			return true;
+		} catch (InterruptedException e) {
+			return false;
+		}
+	}
+
+	private synchronized void markUnsynced() {
+		_synced = false;
+		_resyncing = false;
+	}
+
+	/**
+	 * Reload the top members from Redis with a single range read. The read is made
+	 * without holding the replica lock, so leadersIn falls through to Redis instead
+	 * of waiting on it, and the new members are swapped in once it completes.
+	 */
+	private void resync() {
+		synchronized (this) {
+			_resyncing = true;
+		}
+
+		List<LeaderData> leaderData = _transport.range(_leaderboardName, 0, _size - 1, _reverse, 0);
+
+		TreeSet<Entry> leaders = new TreeSet<Entry>(new EntryComparator());
+		Map<String, Entry> entries = new HashMap<String, Entry>();
+		for (LeaderData leader : leaderData) {
+			Entry entry = new Entry(leader.getMember(), leader.getScore());
+			leaders.add(entry);
+			entries.put(entry.member, entry);
+		}
+
+		synchronized (this) {
+			_leaders = leaders;
+			_entries = entries;
+			_complete = _leaders.size() < _size;
+			_resyncing = false;
+			_synced = true;
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Apply a change feed message to the replica, re-syncing afterwards if the message requires it
+	 *
+	 * @param message Change feed message
+	 */
+	private void apply(String message) {
+		boolean resync;
+		synchronized (this) {
+			if (!_synced) {
+				return;
+			}
+
+			applyChange(message);
+			resync = _resyncing;
+		}
+
+		if (resync) {
+			resync();
+		}
+	}
+
+	/**
+	 * Apply a change feed message to the members held locally. Changes that cannot be
+	 * applied locally mark the replica as re-syncing, so leadersIn stops serving pages
+	 * until the re-sync completes.
+	 *
+	 * @param message Change feed message
+	 */
+	private void applyChange(String message) {
+		String[] parts = message.split(" ", 3);
+		String type = parts[0];
+
+		if (SCORE_CHANGED.equals(type)) {
+			changeScore(parts[2], parseScore(parts[1]));
+		} else if (MEMBER_REMOVED.equals(type)) {
+			removeMember(message.substring(MEMBER_REMOVED.length() + 1));
+		} else if (SCORE_RANGE_REMOVED.equals(type)) {
+			removeScoreRange(parseScore(parts[1]), parseScore(parts[2]));
+		} else if (TRIMMED.equals(type)) {
+			trim(Integer.parseInt(parts[1]));
+		} else {
+			_resyncing = true;
+		}
+	}
+
+	/**
+	 * Move a member to its new position, re-syncing only if it may have dropped out of the window
+	 *
+	 * @param member Member
+	 * @param score New score
+	 */
+	private void changeScore(String member, double score) {
+		Entry existing = _entries.remove(member);
+		if (existing != null) {
+			_leaders.remove(existing);
+		}
+
+		Entry entry = new Entry(member, score);
+
+		if (_complete) {
+			insert(entry);
+			if (_leaders.size() > _size) {
+				_entries.remove(_leaders.pollLast().member);
+				_complete = false;
+			}
+			return;
+		}
+
+		if (_leaders.isEmpty() || _leaders.comparator().compare(entry, _leaders.last()) < 0) {
+			insert(entry);
+			if (existing == null) {
+				_entries.remove(_leaders.pollLast().member);
+			}
+		} else if (existing != null) {
+			// A member outside the window may now outrank it
+			_resyncing = true;
+		}
+	}
+
+	private void removeMember(String member) {
+		Entry existing = _entries.remove(member);
+		if (existing != null) {
+			_leaders.remove(existing);
+			if (!_complete) {
+				_resyncing = true;
+			}
+		}
+	}
+
+	private void removeScoreRange(double minScore, double maxScore) {
+		boolean removed = false;
+
+		Iterator<Entry> leadersIterator = _leaders.iterator();
+		while (leadersIterator.hasNext()) {
+			Entry entry = leadersIterator.next();
+			if (entry.score >= minScore && entry.score <= maxScore) {
+				leadersIterator.remove();
+				_entries.remove(entry.member);
+				removed = true;
+			}
+		}
+
+		if (removed && !_complete) {
+			_resyncing = true;
+		}
+	}
+
+	private void trim(int maxMembers) {
+		if (maxMembers >= _size) {
+			return;
+		}
+
+		// The whole leaderboard now fits in the window
+		while (_leaders.size() > maxMembers) {
+			_entries.remove(_leaders.pollLast().member);
+		}
+		_complete = true;
+	}
+
+	private void insert(Entry entry) {
+		_leaders.add(entry);
+		_entries.put(entry.member, entry);
+	}
+
+	private static class Entry {
+		final String member;
+		final double score;
+
+		Entry(String member, double score) {
+			this.member = member;
+			this.score = score;
+		}
+	}
+
+	/**
+	 * Orders entries the way Redis ranks them: by score, then lexicographically by member
+	 */
+	private class EntryComparator implements Comparator<Entry> {
+		public int compare(Entry a, Entry b) {
+			int result = Double.compare(a.score, b.score);
+			if (result == 0) {
+				result = a.member.compareTo(b.member);
+			}
+
+			return _reverse ? result : -result;
+		}
+	}
+
+	private class ChangeListener extends JedisPubSub {
+		public void onSubscribe(String channel, int subscribedChannels) {
+			resync();
+		}
+
+		public void onMessage(String channel, String message) {
+			apply(message);
+		}
+
+		public void onUnsubscribe(String channel, int subscribedChannels) {
+			markUnsynced();
+		}
+
+		public void onPMessage(String pattern, String channel, String message) {
+		}
+
+		public void onPSubscribe(String pattern, int subscribedChannels) {
+		}
+
+		public void onPUnsubscribe(String pattern, int subscribedChannels) {
+		}
+	}
+}
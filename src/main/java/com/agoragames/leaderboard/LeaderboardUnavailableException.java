@@ -0,0 +1,18 @@
+package com.agoragames.leaderboard;
+
+/**
+ * Thrown when a leaderboard operation cannot reach Redis in time, or is
+ * rejected because the circuit breaker is open
+ */
+public class LeaderboardUnavailableException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public LeaderboardUnavailableException(String message) {
+		super(message);
+	}
+
+	public LeaderboardUnavailableException(String message, Throwable cause) {
+		super(message, cause);
+	}
+}
@@ -0,0 +1,121 @@
+package com.agoragames.leaderboard;
+
+import java.util.List;
+
+/**
+ * Commands queued by a RedisTransport and sent in a single round trip.
+ *
+ * Replies are returned by execute in the order the commands were queued.
+ */
+public interface RedisBatch {
+
+	/**
+	 * Queue ZCARD; the reply is a Long
+	 *
+	 * @param key Sorted set
+	 */
+	void zcard(String key);
+
+	/**
+	 * Queue ZSCORE; the reply is a Double or null
+	 *
+	 * @param key Sorted set
+	 * @param member Member
+	 */
+	void zscore(String key, String member);
+
+	/**
+	 * Queue a lookup of many scores at once; the reply is a List of Double with null for missing members
+	 *
+	 * @param key Sorted set
+	 * @param members Members
+	 */
+	void zmscore(String key, List<String> members);
+
+	/**
+	 * Queue a rank lookup; the reply is a 0-based Long rank or null
+	 *
+	 * @param key Sorted set
+	 * @param member Member
+	 * @param reverse Rank lowest scores first if true, highest scores first otherwise
+	 */
+	void rank(String key, String member, boolean reverse);
+
+	/**
+	 * Queue HMGET; the reply is a List of String with null for missing fields
+	 *
+	 * @param key Hash
+	 * @param fields Fields
+	 */
+	void hmget(String key, List<String> fields);
+
+	/**
+	 * Queue EXISTS; the reply is a Boolean
+	 *
+	 * @param key Key
+	 */
+	void exists(String key);
+
+	/**
+	 * Queue removal of many members at once; the reply is the Long number removed
+	 *
+	 * @param key Sorted set
+	 * @param members Members
+	 */
+	void zrem(String key, List<String> members);
+
+	/**
+	 * Queue removal of many fields at once; the reply is the Long number removed
+	 *
+	 * @param key Hash
+	 * @param fields Fields
+	 */
+	void hdel(String key, List<String> fields);
+
+	/**
+	 * Queue DEL; the reply is the Long number of keys removed
+	 *
+	 * @param keys Keys
+	 */
+	void del(String... keys);
+
+	/**
+	 * Queue removal of keys that does not block Redis; the reply is the Long number of keys removed
+	 *
+	 * @param keys Keys
+	 */
+	void unlink(String... keys);
+
+	/**
+	 * Queue RENAME
+	 *
+	 * @param key Key
+	 * @param newKey New key
+	 */
+	void rename(String key, String newKey);
+
+	/**
+	 * Queue a copy of the top members of a sorted set; the reply is the Long number of members copied
+	 *
+	 * @param source Sorted set
+	 * @param destination Sorted set the members are stored in, replacing it
+	 * @param maxMembers Number of top members to copy, or 0 to copy every member
+	 * @param reverse Rank lowest scores first if true, highest scores first otherwise
+	 */
+	void copy(String source, String destination, int maxMembers, boolean reverse);
+
+	/**
+	 * Queue PUBLISH
+	 *
+	 * @param channel Channel
+	 * @param message Message
+	 */
+	void publish(String channel, String message);
+
+	/**
+	 * Send the queued commands
+	 *
+	 * @return Replies in the order the commands were queued
+	 */
+	List<Object> execute();
+}
@@ -0,0 +1,18 @@
+package com.agoragames.leaderboard;
+
+/**
+ * Thrown by a RedisTransport when Redis cannot be reached or the connection
+ * fails mid-command, as opposed to Redis answering a command with an error
+ */
+public class RedisConnectionException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public RedisConnectionException(String message) {
+		super(message);
+	}
+
+	public RedisConnectionException(Throwable cause) {
+		super(cause);
+	}
+}
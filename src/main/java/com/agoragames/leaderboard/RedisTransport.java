@@ -0,0 +1,144 @@
+package com.agoragames.leaderboard;
+
+import java.util.List;
+
+/**
+ * The Redis commands a Leaderboard is built on.
+ *
+ * Implementations decide how each operation maps onto the wire, so a client with
+ * a newer protocol or command set can be plugged in without changing Leaderboard.
+ * Ranks are 0-based and a reverse leaderboard ranks lowest scores first.
+ *
+ * Implementations throw RedisConnectionException from any operation, including the
+ * commands of a batch, when Redis cannot be reached or the connection fails. Other
+ * exceptions are treated as command errors that Redis answered.
+ */
+public interface RedisTransport {
+
+	/**
+	 * Return the number of members in a sorted set
+	 *
+	 * @param key Sorted set
+	 * @return Number of members
+	 */
+	long zcard(String key);
+
+	/**
+	 * Return the number of members in a sorted set in a score range
+	 *
+	 * @param key Sorted set
+	 * @param minScore Minimum score
+	 * @param maxScore Maximum score
+	 * @return Number of members in the score range
+	 */
+	long zcount(String key, double minScore, double maxScore);
+
+	/**
+	 * Return the score of a member
+	 *
+	 * @param key Sorted set
+	 * @param member Member
+	 * @return Score or null if the member is not in the sorted set
+	 */
+	Double zscore(String key, String member);
+
+	/**
+	 * Return the 0-based rank of a member
+	 *
+	 * @param key Sorted set
+	 * @param member Member
+	 * @param reverse Rank lowest scores first if true, highest scores first otherwise
+	 * @return Rank or null if the member is not in the sorted set
+	 */
+	Long rank(String key, String member, boolean reverse);
+
+	/**
+	 * Return a range of members with their scores, decoded directly into LeaderData
+	 *
+	 * @param key Sorted set
+	 * @param start 0-based rank of the first member
+	 * @param stop 0-based rank of the last member
+	 * @param reverse Rank lowest scores first if true, highest scores first otherwise
+	 * @param firstRank Rank given to the first member, subsequent members are numbered from it
+	 * @return Members in the range
+	 */
+	List<LeaderData> range(String key, long start, long stop, boolean reverse, long firstRank);
+
+	/**
+	 * Write a score for a member. The write mode is checked against the current score and,
+	 * if the score is written, the previous score and rank are recorded, the sorted set is
+	 * trimmed and the change is published, all atomically with the write. Writing the score
+	 * the member already has must have no side effects, so the write can be safely repeated.
+	 *
+	 * @param key Sorted set
+	 * @param member Member
+	 * @param score Score
+	 * @param writeMode Write mode
+	 * @param options Side effects of the write
+	 * @return 1 if the member was added, 0 otherwise
+	 */
+	long addScore(String key, String member, double score, WriteMode writeMode, WriteOptions options);
+
+	/**
+	 * Change the score for a member by a delta. The previous score and rank are recorded,
+	 * the sorted set is trimmed and the change is published, all atomically with the write.
+	 *
+	 * @param key Sorted set
+	 * @param member Member
+	 * @param delta Score delta
+	 * @param options Side effects of the write
+	 * @return Updated score
+	 */
+	double incrementScore(String key, String member, double delta, WriteOptions options);
+
+	/**
+	 * Remove members in a score range. Their previous score and rank records are removed
+	 * and the removal is published, all atomically with the removal.
+	 *
+	 * @param key Sorted set
+	 * @param minScore Minimum score
+	 * @param maxScore Maximum score
+	 * @param options Side effects of the removal; the maximum number of members is not used
+	 * @return Number of members removed
+	 */
+	long removeRangeByScore(String key, double minScore, double maxScore, WriteOptions options);
+
+	/**
+	 * Remove the members ranked below the given number of members. Their previous score and
+	 * rank records are removed and the removal is published, all atomically with the removal.
+	 *
+	 * @param key Sorted set
+	 * @param maxMembers Number of members to keep
+	 * @param options Side effects of the removal; the maximum number of members is not used
+	 * @return Number of members removed
+	 */
+	long removeOutsideRank(String key, int maxMembers, WriteOptions options);
+
+	/**
+	 * Remove keys without blocking Redis while their memory is reclaimed
+	 *
+	 * @param keys Keys
+	 * @return Number of keys removed
+	 */
+	long unlink(String... keys);
+
+	/**
+	 * Start a batch of commands that are sent in a single round trip
+	 *
+	 * @param atomic Execute the commands as a transaction if true
+	 * @return Batch
+	 */
+	RedisBatch batch(boolean atomic);
+
+	/**
+	 * Disconnect from the Redis instance
+	 */
+	void disconnect();
+
+	/**
+	 * Drop the connection to the Redis instance so the next command opens a new one,
+	 * repeating any connection handshake. Safe to call from another thread to abandon
+	 * a command that is blocked on the connection.
+	 */
+	void reconnect();
+}
@@ -0,0 +1,833 @@
+package com.agoragames.leaderboard;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Wraps a Leaderboard so that Redis outages degrade instead of stalling callers.
+ *
+ * Every operation runs on a dedicated thread that owns the Redis connection and is
+ * bounded by a timeout. Connection failures and timeouts are retried for idempotent
+ * operations and counted by a circuit breaker, which fails fast while open. Pages
+ * read through leadersIn and aroundMeIn can optionally be served stale from the
+ * last successful read while Redis is unavailable.
+ */
+public class ResilientLeaderboard {
+
+	public static final long DEFAULT_TIMEOUT_MILLIS = 500;
+	public static final int DEFAULT_MAX_RETRIES = 2;
+	public static final long DEFAULT_RETRY_BACKOFF_MILLIS = 50;
+	public static final int DEFAULT_STALE_PAGES = 1000;
+
+	private Leaderboard _leaderboard;
+	private CircuitBreaker _circuitBreaker;
+	private ExecutorService _executor;
+
+	private long _timeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+	private Map<String, Long> _operationTimeouts = new ConcurrentHashMap<String, Long>();
+	private int _maxRetries = DEFAULT_MAX_RETRIES;
+	private long _retryBackoffMillis = DEFAULT_RETRY_BACKOFF_MILLIS;
+	private boolean _staleReads;
+	private Map<String, List<LeaderData>> _stalePages;
+
+	/**
+	 * Wrap a leaderboard using a circuit breaker with the default settings
+	 *
+	 * @param leaderboard Leaderboard
+	 */
+	public ResilientLeaderboard(Leaderboard leaderboard) {
+		this(leaderboard, new CircuitBreaker());
+	}
+
+	/**
+	 * Wrap a leaderboard using a given circuit breaker
+	 *
+	 * @param leaderboard Leaderboard
+	 * @param circuitBreaker Circuit breaker
+	 */
+	public ResilientLeaderboard(Leaderboard leaderboard, CircuitBreaker circuitBreaker) {
+		_leaderboard = leaderboard;
+		_circuitBreaker = circuitBreaker;
+		_executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "leaderboard-" + _leaderboard.getLeaderboardName());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		_stalePages = Collections.synchronizedMap(new LinkedHashMap<String, List<LeaderData>>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			protected boolean removeEldestEntry(Map.Entry<String, List<LeaderData>> eldest) {
+				return size() > DEFAULT_STALE_PAGES;
+			}
+		});
+	}
+
+	/**
+	 * Get the wrapped leaderboard. It must not be used directly while operations are in flight.
+	 *
+	 * @return Leaderboard
+	 */
+	public Leaderboard getLeaderboard() {
+		return _leaderboard;
+	}
+
+	/**
+	 * Get the circuit breaker
+	 *
+	 * @return Circuit breaker
+	 */
+	public CircuitBreaker getCircuitBreaker() {
+		return _circuitBreaker;
+	}
+
+	/**
+	 * Get the default operation timeout
+	 *
+	 * @return Timeout in milliseconds
+	 */
+	public long getTimeout() {
+		return _timeoutMillis;
+	}
+
+	/**
+	 * Set the default operation timeout. The timeout includes time spent queued behind other
+	 * callers' operations; an operation that times out before it starts is rejected without
+	 * a retry and without dropping the connection.
+	 *
+	 * @param timeoutMillis Timeout in milliseconds
+	 */
+	public void setTimeout(long timeoutMillis) {
+		if (timeoutMillis < 1) {
+			timeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+		}
+
+		_timeoutMillis = timeoutMillis;
+	}
+
+	/**
+	 * Get the timeout for an operation
+	 *
+	 * @param operation Operation name, e.g. leadersIn
+	 * @return Timeout in milliseconds
+	 */
+	public long getTimeout(String operation) {
+		Long timeoutMillis = _operationTimeouts.get(operation);
+		return timeoutMillis == null ? _timeoutMillis : timeoutMillis;
+	}
+
+	/**
+	 * Set the timeout for an operation, overriding the default operation timeout
+	 *
+	 * @param operation Operation name, e.g. leadersIn
+	 * @param timeoutMillis Timeout in milliseconds, or 0 to use the default operation timeout
+	 */
+	public void setTimeout(String operation, long timeoutMillis) {
+		if (timeoutMillis < 1) {
+			_operationTimeouts.remove(operation);
+		} else {
+			_operationTimeouts.put(operation, timeoutMillis);
+		}
+	}
+
+	/**
+	 * Get the number of times idempotent operations are retried
+	 *
+	 * @return Maximum number of retries
+	 */
+	public int getMaxRetries() {
+		return _maxRetries;
+	}
+
+	/**
+	 * Set the number of times idempotent operations are retried. An operation whose
+	 * retries all fail counts as a single failure towards the circuit breaker threshold.
+	 *
+	 * @param maxRetries Maximum number of retries
+	 */
+	public void setMaxRetries(int maxRetries) {
+		_maxRetries = maxRetries < 0 ? 0 : maxRetries;
+	}
+
+	/**
+	 * Set the delay before the first retry. Later retries back off linearly.
+	 *
+	 * @param retryBackoffMillis Delay in milliseconds
+	 */
+	public void setRetryBackoff(long retryBackoffMillis) {
+		_retryBackoffMillis = retryBackoffMillis < 0 ? 0 : retryBackoffMillis;
+	}
+
+	/**
+	 * Check whether pages are served stale while Redis is unavailable
+	 *
+	 * @return true if stale reads are enabled, false otherwise
+	 */
+	public boolean isStaleReads() {
+		return _staleReads;
+	}
+
+	/**
+	 * Serve the last successfully read page from leadersIn and aroundMeIn while Redis is unavailable
+	 *
+	 * @param staleReads Enable stale reads
+	 */
+	public void setStaleReads(boolean staleReads) {
+		_staleReads = staleReads;
+		if (!staleReads) {
+			_stalePages.clear();
+		}
+	}
+
+	/**
+	 * Disconnect from the Redis instance and stop the operation thread
+	 */
+	public void disconnect() {
+		_executor.shutdownNow();
+		_leaderboard.disconnect();
+	}
+
+	/**
+	 * Delete the current leaderboard
+	 *
+	 * @return Number of keys removed
+	 */
+	public long deleteLeaderboard() {
+		return deleteLeaderboardNamed(_leaderboard.getLeaderboardName());
+	}
+
+	/**
+	 * Delete the named leaderboard
+	 *
+	 * @param leaderboardName Leaderboard
+	 * @return Number of keys removed
+	 */
+	public long deleteLeaderboardNamed(final String leaderboardName) {
+		return execute("deleteLeaderboardNamed", true, new Callable<Long>() {
+			public Long call() {
+				return _leaderboard.deleteLeaderboardNamed(leaderboardName);
+			}
+		});
+	}
+
+	/**
+	 * Delete the current leaderboard without blocking Redis
+	 *
+	 * @return Number of members removed
+	 */
+	public long unlinkLeaderboard() {
+		return unlinkLeaderboardNamed(_leaderboard.getLeaderboardName());
+	}
+
+	/**
+	 * Delete the named leaderboard without blocking Redis
+	 *
+	 * @param leaderboardName Leaderboard
+	 * @return Number of members removed
+	 */
+	public long unlinkLeaderboardNamed(final String leaderboardName) {
+		return execute("unlinkLeaderboardNamed", true, new Callable<Long>() {
+			public Long call() {
+				return _leaderboard.unlinkLeaderboardNamed(leaderboardName);
+			}
+		});
+	}
+
+	/**
+	 * Return the total # of members in the current leaderboard
+	 *
+	 * @return Total # of members in the current leaderboard
+	 */
+	public long totalMembers() {
+		return totalMembersIn(_leaderboard.getLeaderboardName());
+	}
+
+	/**
+	 * Return the total # of members in the named leaderboard
+	 *
+	 * @param leaderboardName Leaderboard
+	 * @return Total # of members in the leaderboard
+	 */
+	public long totalMembersIn(final String leaderboardName) {
+		return execute("totalMembersIn", true, new Callable<Long>() {
+			public Long call() {
+				return _leaderboard.totalMembersIn(leaderboardName);
+			}
+		});
+	}
+
+	/**
+	 * Return the total # of pages in the current leaderboard
+	 *
+	 * @return Total # of pages in the current leaderboard
+	 */
+	public int totalPages() {
+		return totalPagesIn(_leaderboard.getLeaderboardName(), null);
+	}
+
+	/**
+	 * Return the total # of pages in the named leaderboard
+	 *
+	 * @param leaderboardName Leaderboard
+	 * @param pageSize Page size
+	 * @return Total # of pages in the named leaderboard
+	 */
+	public int totalPagesIn(final String leaderboardName, final Integer pageSize) {
+		return execute("totalPagesIn", true, new Callable<Integer>() {
+			public Integer call() {
+				return _leaderboard.totalPagesIn(leaderboardName, pageSize);
+			}
+		});
+	}
+
+	/**
+	 * Return the total # of members in the current leaderboard in a score range
+	 *
+	 * @param minScore Minimum score
+	 * @param maxScore Maximum score
+	 * @return Total # of members in the current leaderboard in a score range
+	 */
+	public long totalMembersInScoreRange(double minScore, double maxScore) {
+		return totalMembersInScoreRangeIn(_leaderboard.getLeaderboardName(), minScore, maxScore);
+	}
+
+	/**
+	 * Return the total # of members in the named leaderboard in a score range
+	 *
+	 * @param leaderboardName Leaderboard
+	 * @param minScore Minimum score
+	 * @param maxScore Maximum score
+	 * @return Total # of members in the named leaderboard in a score range
+	 */
+	public long totalMembersInScoreRangeIn(final String leaderboardName, final double minScore, final double maxScore) {
+		return execute("totalMembersInScoreRangeIn", true, new Callable<Long>() {
+			public Long call() {
+				return _leaderboard.totalMembersInScoreRangeIn(leaderboardName, minScore, maxScore);
+			}
+		});
+	}
+
+	/**
+	 * Rank a member in the current leaderboard using the leaderboard's write mode
+	 *
+	 * @param member Member
+	 * @param score Score
+	 * @return 1 if the member was added, 0 otherwise
+	 */
+	public long rankMember(String member, double score) {
+		return rankMemberIn(_leaderboard.getLeaderboardName(), member, score, _leaderboard.getWriteMode());
+	}
+
+	/**
+	 * Rank a member in the current leaderboard using the given write mode
+	 *
+	 * @param member Member
+	 * @param score Score
+	 * @param writeMode Write mode
+	 * @return 1 if the member was added, 0 otherwise
+	 */
+	public long rankMember(String member, double score, WriteMode writeMode) {
+		return rankMemberIn(_leaderboard.getLeaderboardName(), member, score, writeMode);
+	}
+
+	/**
+	 * Rank a member in the named leaderboard using the leaderboard's write mode
+	 *
+	 * @param leaderboardName Leaderboard
+	 * @param member Member
+	 * @param score Score
+	 * @return 1 if the member was added, 0 otherwise
+	 */
+	public long rankMemberIn(String leaderboardName, String member, double score) {
+		return rankMemberIn(leaderboardName, member, score, _leaderboard.getWriteMode());
+	}
+
+	/**
+	 * Rank a member in the named leaderboard using the given write mode. Setting a score is
+	 * idempotent, so it is retried. A retry of a write that was applied finds the score
+	 * unchanged and leaves the recorded previous rank alone, so retries are also safe when
+	 * rank changes are tracked.
+	 *
+	 * @param leaderboardName Leaderboard
+	 * @param member Member
+	 * @param score Score
+	 * @param writeMode Write mode
+	 * @return 1 if the member was added, 0 otherwise
+	 */
+	public long rankMemberIn(final String leaderboardName, final String member, final double score, final WriteMode writeMode) {
+		return execute("rankMemberIn", true, new Callable<Long>() {
+			public Long call() {
+				return _leaderboard.rankMemberIn(leaderboardName, member, score, writeMode);
+			}
+		});
+	}
+
+	/**
+	 * Rank a member in the current leaderboard with a composite score
+	 *
+	 * @param member Member
+	 * @param components Score components, primary score first
+	 * @return 1 if the member was added, 0 otherwise
+	 */
+	public long rankMemberWithComponents(String member, long... components) {
+		return rankMemberWithComponentsIn(_leaderboard.getLeaderboardName(), member, components);
+	}
+
+	/**
+	 * Rank a member in the named leaderboard with a composite score
+	 *
+	 * @param leaderboardName Leaderboard
+	 * @param member Member
+	 * @param components Score components, primary score first
+	 * @return 1 if the member was added, 0 otherwise
+	 */
+	public long rankMemberWithComponentsIn(final String leaderboardName, final String member, final long... components) {
+		return execute("rankMemberWithComponentsIn", true, new Callable<Long>() {
+			public Long call() {
+				return _leaderboard.rankMemberWithComponentsIn(leaderboardName, member, components);
+			}
+		});
+	}
+
+	/**
+	 * Take a rank snapshot of the current leaderboard
+	 *
+	 * @return Number of members in the snapshot
+	 */
+	public long snapshotRanks() {
+		return snapshotRanksIn(_leaderboard.getLeaderboardName());
+	}
+
+	/**
+	 * Take a rank snapshot of the named leaderboard. A repeated snapshot would shift
+	 * out an extra generation, so it is never retried.
+	 *
+	 * @param leaderboardName Leaderboard
+	 * @return Number of members in the snapshot
+	 */
+	public long snapshotRanksIn(final String leaderboardName) {
+		return execute("snapshotRanksIn", false, new Callable<Long>() {
+			public Long call() {
+				return _leaderboard.snapshotRanksIn(leaderboardName);
+			}
+		});
+	}
+
+	/**
+	 * Retrieve the score for a member in the current leaderboard
+	 *
+	 * @param member Member
+	 * @return Member score
+	 */
+	public Double scoreFor(String member) {
+		return scoreForIn(_leaderboard.getLeaderboardName(), member);
+	}
+
+	/**
+	 * Retrieve the score for a member in the named leaderboard
+	 *
+	 * @param leaderboardName Leaderboard
+	 * @param member Member
+	 * @return Member score
+	 */
+	public Double scoreForIn(final String leaderboardName, final String member) {
+		return execute("scoreForIn", true, new Callable<Double>() {
+			public Double call() {
+				return _leaderboard.scoreForIn(leaderboardName, member);
+			}
+		});
+	}
+
+	/**
+	 * Change the score for a member by a certain delta in the current leaderboard
+	 *
+	 * @param member Member
+	 * @param delta Score delta
+	 * @return Updated score
+	 */
+	public double changeScoreFor(String member, double delta) {
+		return changeScoreForMemberIn(_leaderboard.getLeaderboardName(), member, delta);
+	}
+
+	/**
+	 * Change the score for a member by a certain delta in the named leaderboard.
+	 * Increments are not idempotent, so they are never retried.
+	 *
+	 * @param leaderboardName Leaderboard
+	 * @param member Member
+	 * @param delta Score delta
+	 * @return Updated score
+	 */
+	public double changeScoreForMemberIn(final String leaderboardName, final String member, final double delta) {
+		return execute("changeScoreForMemberIn", false, new Callable<Double>() {
+			public Double call() {
+				return _leaderboard.changeScoreForMemberIn(leaderboardName, member, delta);
+			}
+		});
+	}
+
+	/**
+	 * Check to see if member is in the current leaderboard
+	 *
+	 * @param member Member
+	 * @return true if member is in the current leaderboard, false otherwise
+	 */
+	public boolean checkMember(String member) {
+		return checkMemberIn(_leaderboard.getLeaderboardName(), member);
+	}
+
+	/**
+	 * Check to see if member is in the named leaderboard
+	 *
+	 * @param leaderboardName Leaderboard
+	 * @param member Member
+	 * @return true if member is in the named leaderboard, false otherwise
+	 */
+	public boolean checkMemberIn(final String leaderboardName, final String member) {
+		return execute("checkMemberIn", true, new Callable<Boolean>() {
+			public Boolean call() {
+				return _leaderboard.checkMemberIn(leaderboardName, member);
+			}
+		});
+	}
+
+	/**
+	 * Retrieve the rank for a member in the current leaderboard
+	 *
+	 * @param member Member
+	 * @param useZeroIndexForRank Use zero-based index for rank
+	 * @return Rank for member in the current leaderboard
+	 */
+	public Long rankFor(String member, boolean useZeroIndexForRank) {
+		return rankForIn(_leaderboard.getLeaderboardName(), member, useZeroIndexForRank);
+	}
+
+	/**
+	 * Retrieve the rank for a member in the named leaderboard
+	 *
+	 * @param leaderboardName Leaderboard
+	 * @param member Member
+	 * @param useZeroIndexForRank Use zero-based index for rank
+	 * @return Rank for member in the named leaderboard
+	 */
+	public Long rankForIn(final String leaderboardName, final String member, final boolean useZeroIndexForRank) {
+		return execute("rankForIn", true, new Callable<Long>() {
+			public Long call() {
+				return _leaderboard.rankForIn(leaderboardName, member, useZeroIndexForRank);
+			}
+		});
+	}
+
+	/**
+	 * Remove members from the current leaderboard in a given score range
+	 *
+	 * @param minScore Minimum score
+	 * @param maxScore Maximum score
+	 * @return Number of members removed
+	 */
+	public long removeMembersInScoreRange(double minScore, double maxScore) {
+		return removeMembersInScoreRangeIn(_leaderboard.getLeaderboardName(), minScore, maxScore);
+	}
+
+	/**
+	 * Remove members from the named leaderboard in a given score range
+	 *
+	 * @param leaderboardName Leaderboard
+	 * @param minScore Minimum score
+	 * @param maxScore Maximum score
+	 * @return Number of members removed
+	 */
+	public long removeMembersInScoreRangeIn(final String leaderboardName, final double minScore, final double maxScore) {
+		return execute("removeMembersInScoreRangeIn", true, new Callable<Long>() {
+			public Long call() {
+				return _leaderboard.removeMembersInScoreRangeIn(leaderboardName, minScore, maxScore);
+			}
+		});
+	}
+
+	/**
+	 * Remove members from the current leaderboard
+	 *
+	 * @param members List of member names
+	 * @return Number of members removed
+	 */
+	public long removeMembers(List<String> members) {
+		return removeMembersIn(_leaderboard.getLeaderboardName(), members);
+	}
+
+	/**
+	 * Remove members from the named leaderboard
+	 *
+	 * @param leaderboardName Leaderboard
+	 * @param members List of member names
+	 * @return Number of members removed
+	 */
+	public long removeMembersIn(final String leaderboardName, final List<String> members) {
+		return execute("removeMembersIn", true, new Callable<Long>() {
+			public Long call() {
+				return _leaderboard.removeMembersIn(leaderboardName, members);
+			}
+		});
+	}
+
+	/**
+	 * Remove members ranked outside the given rank from the current leaderboard
+	 *
+	 * @param rank Last rank to keep
+	 * @return Number of members removed
+	 */
+	public long removeMembersOutsideRank(int rank) {
+		return removeMembersOutsideRankIn(_leaderboard.getLeaderboardName(), rank);
+	}
+
+	/**
+	 * Remove members ranked outside the given rank from the named leaderboard
+	 *
+	 * @param leaderboardName Leaderboard
+	 * @param rank Last rank to keep
+	 * @return Number of members removed
+	 */
+	public long removeMembersOutsideRankIn(final String leaderboardName, final int rank) {
+		return execute("removeMembersOutsideRankIn", true, new Callable<Long>() {
+			public Long call() {
+				return _leaderboard.removeMembersOutsideRankIn(leaderboardName, rank);
+			}
+		});
+	}
+
+	/**
+	 * Retrieve score and rank for a member in the current leaderboard
+	 *
+	 * @param member Member
+	 * @param useZeroIndexForRank Use zero-based index for rank
+	 * @return Score and rank for a member in the current leaderboard
+	 */
+	public Hashtable<String, Object> scoreAndRankFor(String member, boolean useZeroIndexForRank) {
+		return scoreAndRankForIn(_leaderboard.getLeaderboardName(), member, useZeroIndexForRank);
+	}
+
+	/**
+	 * Retrieve score and rank for a member in the named leaderboard
+	 *
+	 * @param leaderboardName Leaderboard
+	 * @param member Member
+	 * @param useZeroIndexForRank Use zero-based index for rank
+	 * @return Score and rank for a member in the named leaderboard
+	 */
+	public Hashtable<String, Object> scoreAndRankForIn(final String leaderboardName, final String member, final boolean useZeroIndexForRank) {
+		return execute("scoreAndRankForIn", true, new Callable<Hashtable<String, Object>>() {
+			public Hashtable<String, Object> call() {
+				return _leaderboard.scoreAndRankForIn(leaderboardName, member, useZeroIndexForRank);
+			}
+		});
+	}
+
+	/**
+	 * Retrieve a page of leaders as a list of LeaderData in the current leaderboard,
+	 * served stale while Redis is unavailable if stale reads are enabled
+	 *
+	 * @param currentPage Page
+	 * @param useZeroIndexForRank Use zero-based index for rank
+	 * @return Page of leaders as a list of LeaderData in the current leaderboard
+	 */
+	public List<LeaderData> leadersIn(int currentPage, boolean useZeroIndexForRank) {
+		return leadersIn(_leaderboard.getLeaderboardName(), currentPage, useZeroIndexForRank, _leaderboard.getPageSize());
+	}
+
+	/**
+	 * Retrieve a page of leaders as a list of LeaderData in the named leaderboard,
+	 * served stale while Redis is unavailable if stale reads are enabled
+	 *
+	 * @param leaderboardName Leaderboard
+	 * @param currentPage Page
+	 * @param useZeroIndexForRank Use zero-based index for rank
+	 * @param pageSize Page size
+	 * @return Page of leaders as a list of LeaderData in the named leaderboard
+	 */
+	public List<LeaderData> leadersIn(final String leaderboardName, final int currentPage, final boolean useZeroIndexForRank, final int pageSize) {
+		String pageKey = "leadersIn:" + leaderboardName + ":" + currentPage + ":" + useZeroIndexForRank + ":" + pageSize;
+		return executePage("leadersIn", pageKey, new Callable<List<LeaderData>>() {
+			public List<LeaderData> call() {
+				return _leaderboard.leadersIn(leaderboardName, currentPage, useZeroIndexForRank, pageSize);
+			}
+		});
+	}
+
+	/**
+	 * Retrieve leaders around a given member in the current leaderboard as a list of LeaderData,
+	 * served stale while Redis is unavailable if stale reads are enabled
+	 *
+	 * @param member Member
+	 * @param useZeroIndexForRank Use zero-based index for rank
+	 * @return Leaders around a given member in the current leaderboard as a list of LeaderData
+	 */
+	public List<LeaderData> aroundMe(String member, boolean useZeroIndexForRank) {
+		return aroundMeIn(_leaderboard.getLeaderboardName(), member, useZeroIndexForRank, _leaderboard.getPageSize());
+	}
+
+	/**
+	 * Retrieve leaders around a given member in the named leaderboard as a list of LeaderData,
+	 * served stale while Redis is unavailable if stale reads are enabled
+	 *
+	 * @param leaderboardName Leaderboard
+	 * @param member Member
+	 * @param useZeroIndexForRank Use zero-based index for rank
+	 * @param pageSize Page size
+	 * @return Leaders around a given member in the named leaderboard as a list of LeaderData
+	 */
+	public List<LeaderData> aroundMeIn(final String leaderboardName, final String member, final boolean useZeroIndexForRank, final int pageSize) {
+		String pageKey = "aroundMeIn:" + leaderboardName + ":" + useZeroIndexForRank + ":" + pageSize + ":" + member;
+		return executePage("aroundMeIn", pageKey, new Callable<List<LeaderData>>() {
+			public List<LeaderData> call() {
+				return _leaderboard.aroundMeIn(leaderboardName, member, useZeroIndexForRank, pageSize);
+			}
+		});
+	}
+
+	/**
+	 * Retrieve a list of LeaderData objects for a list of members in the current leaderboard
+	 *
+	 * @param members List of member names
+	 * @param useZeroIndexForRank Use zero-based index for rank
+	 * @return List of LeaderData objects for a list of members in the current leaderboard
+	 */
+	public List<LeaderData> rankedInList(List<String> members, boolean useZeroIndexForRank) {
+		return rankedInListIn(_leaderboard.getLeaderboardName(), members, useZeroIndexForRank);
+	}
+
+	/**
+	 * Retrieve a list of LeaderData objects for a list of members in the named leaderboard
+	 *
+	 * @param leaderboardName Leaderboard
+	 * @param members List of member names
+	 * @param useZeroIndexForRank Use zero-based index for rank
+	 * @return List of LeaderData objects for a list of members in the named leaderboard
+	 */
+	public List<LeaderData> rankedInListIn(final String leaderboardName, final List<String> members, final boolean useZeroIndexForRank) {
+		return execute("rankedInListIn", true, new Callable<List<LeaderData>>() {
+			public List<LeaderData> call() {
+				return _leaderboard.rankedInListIn(leaderboardName, members, useZeroIndexForRank);
+			}
+		});
+	}
+
+	/**
+	 * Execute a page read, remembering the page and falling back to it while Redis is unavailable
+	 *
+	 * @param operation Operation name
+	 * @param pageKey Key identifying the page
+	 * @param call Page read
+	 * @return Page of leaders
+	 */
+	private List<LeaderData> executePage(String operation, String pageKey, Callable<List<LeaderData>> call) {
+		try {
+			List<LeaderData> leaderData = execute(operation, true, call);
+			if (_staleReads) {
+				_stalePages.put(pageKey, new ArrayList<LeaderData>(leaderData));
+			}
+
+			return leaderData;
+		} catch (LeaderboardUnavailableException e) {
+			List<LeaderData> staleLeaderData = _staleReads ? _stalePages.get(pageKey) : null;
+			if (staleLeaderData == null) {
+				throw e;
+			}
+
+			return new ArrayList<LeaderData>(staleLeaderData);
+		}
+	}
+
+	/**
+	 * Execute an operation on the operation thread, applying the timeout, retry and circuit breaker policies.
+	 * The circuit breaker is consulted once per operation and records one failure once every attempt
+	 * has failed, so retries do not count towards its failure threshold. An operation abandoned
+	 * without an answer from Redis is released from the circuit breaker without an outcome.
+	 *
+	 * @param operation Operation name
+	 * @param idempotent Retry the operation on connection failures and timeouts
+	 * @param call Operation
+	 * @return Operation result
+	 */
+	private <T> T execute(String operation, boolean idempotent, final Callable<T> call) {
+		int attempts = idempotent ? _maxRetries + 1 : 1;
+		long timeoutMillis = getTimeout(operation);
+		LeaderboardUnavailableException failure = null;
+
+		if (!_circuitBreaker.allowRequest()) {
+			throw new LeaderboardUnavailableException("Circuit breaker is open, " + operation + " rejected");
+		}
+
+		for (int attempt = 0; attempt < attempts; attempt++) {
+			if (attempt > 0 && !sleep(_retryBackoffMillis * attempt)) {
+				break;
+			}
+
+			final AtomicBoolean started = new AtomicBoolean();
+			Future<T> future;
+			try {
+				future = _executor.submit(new Callable<T>() {
+					public T call() throws Exception {
+						started.set(true);
+						return call.call();
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				_circuitBreaker.releaseRequest();
+				throw new LeaderboardUnavailableException("Leaderboard is disconnected, " + operation + " rejected", e);
+			}
+
+			try {
+				T result = future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+				_circuitBreaker.recordSuccess();
+				return result;
+			} catch (TimeoutException e) {
+				future.cancel(true);
+				if (!started.get()) {
+					// Still queued behind other callers, so the connection is in use by
+					// another operation and must not be dropped
+					_circuitBreaker.releaseRequest();
+					throw new LeaderboardUnavailableException(operation + " rejected, still queued after " + timeoutMillis + "ms", e);
+				}
+				// Closing the socket unblocks the operation thread; the next operation
+				// opens a new connection with the full handshake
+				_leaderboard.reconnect();
+				failure = new LeaderboardUnavailableException(operation + " timed out after " + timeoutMillis + "ms", e);
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (!(cause instanceof RedisConnectionException)) {
+					// Redis answered, so the error is not an availability problem
+					_circuitBreaker.recordSuccess();
+					if (cause instanceof RuntimeException) {
+						throw (RuntimeException) cause;
+					}
+					if (cause instanceof Error) {
+						throw (Error) cause;
+					}
+					throw new RuntimeException(cause);
+				}
+				_leaderboard.reconnect();
+				failure = new LeaderboardUnavailableException(operation + " failed to reach Redis", cause);
+			} catch (InterruptedException e) {
+				future.cancel(true);
+				Thread.currentThread().interrupt();
+				_circuitBreaker.releaseRequest();
+				throw new LeaderboardUnavailableException(operation + " interrupted", e);
+			}
+		}
+
+		_circuitBreaker.recordFailure();
+		throw failure;
+	}
+
+	private boolean sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+}
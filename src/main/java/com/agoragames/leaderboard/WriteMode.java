@@ -0,0 +1,38 @@
+package com.agoragames.leaderboard;
+
+/**
+ * Conditions under which a score is written when ranking a member
+ */
+public enum WriteMode {
+
+	/**
+	 * Always write the score
+	 */
+	ALWAYS,
+
+	/**
+	 * Only add new members, never update existing ones (ZADD NX)
+	 */
+	ONLY_IF_NEW,
+
+	/**
+	 * Only update existing members, never add new ones (ZADD XX)
+	 */
+	ONLY_IF_EXISTING,
+
+	/**
+	 * Add new members, and only update existing members if the score is greater than the current score (ZADD GT)
+	 */
+	ONLY_IF_GREATER,
+
+	/**
+	 * Add new members, and only update existing members if the score is less than the current score (ZADD LT)
+	 */
+	ONLY_IF_LESS,
+
+	/**
+	 * Add new members, and only update existing members if the score ranks better than the current score.
+	 * This is ONLY_IF_GREATER for a regular leaderboard and ONLY_IF_LESS for a reverse leaderboard.
+	 */
+	KEEP_BEST
+}
@@ -0,0 +1,72 @@
+package com.agoragames.leaderboard;
+
+/**
+ * Side effects applied atomically with a score write by a RedisTransport
+ */
+public class WriteOptions {
+
+	private boolean _reverse;
+	private int _maxMembers;
+	private String _previousKey;
+	private String _channel;
+
+	/**
+	 * Create the side effects of a score write
+	 *
+	 * @param reverse Rank lowest scores first if true, highest scores first otherwise
+	 * @param maxMembers Number of members to keep after the write, or 0 for unbounded
+	 * @param previousKey Hash recording the previous score and rank of each member, or null
+	 * @param channel Change feed channel the write is published on, or null
+	 */
+	public WriteOptions(boolean reverse, int maxMembers, String previousKey, String channel) {
+		_reverse = reverse;
+		_maxMembers = maxMembers < 1 ? 0 : maxMembers;
+		_previousKey = previousKey;
+		_channel = channel;
+	}
+
+	/**
+	 * Check whether lowest scores rank first
+	 *
+	 * @return true if lowest scores rank first, false if highest scores rank first
+	 */
+	public boolean isReverse() {
+		return _reverse;
+	}
+
+	/**
+	 * Get the number of members to keep after the write
+	 *
+	 * @return Number of members, or 0 if unbounded
+	 */
+	public int getMaxMembers() {
+		return _maxMembers;
+	}
+
+	/**
+	 * Get the hash recording the previous score and rank of each member
+	 *
+	 * @return Hash, or null if previous ranks are not recorded
+	 */
+	public String getPreviousKey() {
+		return _previousKey;
+	}
+
+	/**
+	 * Get the change feed channel the write is published on
+	 *
+	 * @return Channel, or null if the write is not published
+	 */
+	public String getChannel() {
+		return _channel;
+	}
+
+	/**
+	 * Check whether the write has no side effects
+	 *
+	 * @return true if the write is a plain score update, false otherwise
+	 */
+	public boolean isPlain() {
+		return _maxMembers == 0 && _previousKey == null && _channel == null;
+	}
+}
@@ -0,0 +1,55 @@
+package com.agoragames.leaderboard;
+
+import junit.framework.TestCase;
+
+public class CircuitBreakerTest extends TestCase {
+
+	public void testOpensAfterConsecutiveFailures() {
+		CircuitBreaker circuitBreaker = new CircuitBreaker(3, 60000);
+
+		circuitBreaker.recordFailure();
+		circuitBreaker.recordFailure();
+		circuitBreaker.recordSuccess();
+		circuitBreaker.recordFailure();
+		circuitBreaker.recordFailure();
+		assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+		assertTrue(circuitBreaker.allowRequest());
+
+		circuitBreaker.recordFailure();
+		assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+		assertFalse(circuitBreaker.allowRequest());
+	}
+
+	public void testHalfOpenAllowsSingleTrialRequest() throws Exception {
+		CircuitBreaker circuitBreaker = new CircuitBreaker(1, 10);
+
+		circuitBreaker.recordFailure();
+		Thread.sleep(20);
+		assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+
+		assertTrue(circuitBreaker.allowRequest());
+		assertFalse(circuitBreaker.allowRequest());
+
+		circuitBreaker.recordFailure();
+		assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+
+		Thread.sleep(20);
+		assertTrue(circuitBreaker.allowRequest());
+		circuitBreaker.recordSuccess();
+		assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+		assertTrue(circuitBreaker.allowRequest());
+	}
+
+	public void testReleaseAbandonedTrialRequest() throws Exception {
+		CircuitBreaker circuitBreaker = new CircuitBreaker(1, 10);
+
+		circuitBreaker.recordFailure();
+		Thread.sleep(20);
+		assertTrue(circuitBreaker.allowRequest());
+		assertFalse(circuitBreaker.allowRequest());
+
+		circuitBreaker.releaseRequest();
+		assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+		assertTrue(circuitBreaker.allowRequest());
+	}
+}
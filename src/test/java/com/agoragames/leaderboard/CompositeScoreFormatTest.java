@@ -0,0 +1,62 @@
+package com.agoragames.leaderboard;
+
+import junit.framework.TestCase;
+
+public class CompositeScoreFormatTest extends TestCase {
+
+	public void testEncodeAndDecode() {
+		CompositeScoreFormat scoreFormat = new CompositeScoreFormat(new int[] {20, 33}, new boolean[] {false, true});
+
+		assertEquals(2, scoreFormat.getComponentCount());
+		assertEquals((1L << 33) - 1, scoreFormat.getMaxValue(1));
+
+		long[] components = scoreFormat.decode(scoreFormat.encode(1000, 1319500800L));
+		assertEquals(1000, components[0]);
+		assertEquals(1319500800L, components[1]);
+
+		components = scoreFormat.decode(scoreFormat.encode(scoreFormat.getMaxValue(0), scoreFormat.getMaxValue(1)));
+		assertEquals(scoreFormat.getMaxValue(0), components[0]);
+		assertEquals(scoreFormat.getMaxValue(1), components[1]);
+	}
+
+	public void testOrdering() {
+		CompositeScoreFormat scoreFormat = new CompositeScoreFormat(new int[] {20, 33}, new boolean[] {false, true});
+
+		assertTrue(scoreFormat.encode(101, 500) > scoreFormat.encode(100, 100));
+		assertTrue("Earlier timestamp wins the tie", scoreFormat.encode(100, 100) > scoreFormat.encode(100, 101));
+
+		scoreFormat = new CompositeScoreFormat(10, 10, 10);
+		assertTrue(scoreFormat.encode(1, 0, 1) > scoreFormat.encode(1, 0, 0));
+		assertTrue(scoreFormat.encode(1, 1, 0) > scoreFormat.encode(1, 0, 1023));
+	}
+
+	public void testIsEncoded() {
+		CompositeScoreFormat scoreFormat = new CompositeScoreFormat(4, 4);
+
+		assertTrue(scoreFormat.isEncoded(255));
+		assertFalse(scoreFormat.isEncoded(256));
+		assertFalse(scoreFormat.isEncoded(-1));
+		assertFalse(scoreFormat.isEncoded(1.5));
+	}
+
+	public void testInvalidFormatsAndComponents() {
+		try {
+			new CompositeScoreFormat(40, 14);
+			fail("More than 53 bits should be rejected");
+		} catch (IllegalArgumentException e) {
+		}
+
+		CompositeScoreFormat scoreFormat = new CompositeScoreFormat(4, 4);
+		try {
+			scoreFormat.encode(16, 0);
+			fail("Component out of range should be rejected");
+		} catch (IllegalArgumentException e) {
+		}
+
+		try {
+			scoreFormat.encode(1);
+			fail("Missing component should be rejected");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+}
@@ -0,0 +1,178 @@
+package com.agoragames.leaderboard;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.*;
+
+import junit.framework.TestCase;
+import redis.clients.jedis.DefaultJedisClientConfig;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.Jedis;
+
+public class JedisTransportTest extends TestCase {
+
+	public void testDecodeResp2Range() {
+		List<Object> reply = new ArrayList<Object>();
+		reply.add("member_2".getBytes());
+		reply.add("2".getBytes());
+		reply.add("member_1".getBytes());
+		reply.add("inf".getBytes());
+
+		List<LeaderData> leaderData = JedisTransport.decodeRange(reply, 5);
+		assertEquals(2, leaderData.size());
+		assertEquals("member_2", leaderData.get(0).getMember());
+		assertEquals(2.0, leaderData.get(0).getScore());
+		assertEquals(5, leaderData.get(0).getRank());
+		assertEquals("member_1", leaderData.get(1).getMember());
+		assertEquals(Double.POSITIVE_INFINITY, leaderData.get(1).getScore());
+		assertEquals(6, leaderData.get(1).getRank());
+	}
+
+	public void testDecodeResp3Range() {
+		List<Object> reply = new ArrayList<Object>();
+		reply.add(Arrays.asList((Object) "member_2".getBytes(), 2.5));
+		reply.add(Arrays.asList((Object) "member_1".getBytes(), -1.0));
+
+		List<LeaderData> leaderData = JedisTransport.decodeRange(reply, 0);
+		assertEquals(2, leaderData.size());
+		assertEquals("member_2", leaderData.get(0).getMember());
+		assertEquals(2.5, leaderData.get(0).getScore());
+		assertEquals(0, leaderData.get(0).getRank());
+		assertEquals(-1.0, leaderData.get(1).getScore());
+		assertEquals(1, leaderData.get(1).getRank());
+
+		assertTrue(JedisTransport.decodeRange(new ArrayList<Object>(), 1).isEmpty());
+	}
+
+	public void testFormatScore() {
+		assertEquals("+inf", JedisTransport.formatScore(Double.POSITIVE_INFINITY));
+		assertEquals("-inf", JedisTransport.formatScore(Double.NEGATIVE_INFINITY));
+
+		double score = 4503599627370497.0;
+		assertEquals(score, LeaderboardReplica.parseScore(JedisTransport.formatScore(score)));
+	}
+
+	public void testConditionFor() {
+		assertEquals("", JedisTransport.conditionFor(null, false));
+		assertEquals("", JedisTransport.conditionFor(WriteMode.ALWAYS, false));
+		assertEquals("NX", JedisTransport.conditionFor(WriteMode.ONLY_IF_NEW, false));
+		assertEquals("XX", JedisTransport.conditionFor(WriteMode.ONLY_IF_EXISTING, false));
+		assertEquals("GT", JedisTransport.conditionFor(WriteMode.ONLY_IF_GREATER, true));
+		assertEquals("LT", JedisTransport.conditionFor(WriteMode.ONLY_IF_LESS, false));
+		assertEquals("GT", JedisTransport.conditionFor(WriteMode.KEEP_BEST, false));
+		assertEquals("LT", JedisTransport.conditionFor(WriteMode.KEEP_BEST, true));
+	}
+
+	public void testReconnectWhileUnreachable() throws IOException {
+		Proxy proxy = new Proxy(Leaderboard.DEFAULT_REDIS_HOST, Leaderboard.DEFAULT_REDIS_PORT);
+		proxy.start();
+		Jedis jedis = new Jedis(Leaderboard.DEFAULT_REDIS_HOST, Leaderboard.DEFAULT_REDIS_PORT);
+		JedisTransport transport = new JedisTransport(new HostAndPort(Leaderboard.DEFAULT_REDIS_HOST, proxy.getPort()),
+			DefaultJedisClientConfig.builder().database(1).build());
+		try {
+			transport.addScore("name", "member", 1, WriteMode.ALWAYS, new WriteOptions(false, 0, null, null));
+
+			proxy.stop();
+			transport.reconnect();
+			try {
+				transport.zcard("name");
+				fail("Redis should be unreachable");
+			} catch (RedisConnectionException e) {
+			}
+
+			proxy.start();
+			transport.addScore("name", "member_2", 2, WriteMode.ALWAYS, new WriteOptions(false, 0, null, null));
+			assertEquals(2, transport.zcard("name"));
+			assertFalse(jedis.exists("name"));
+			transport.unlink("name");
+		} finally {
+			transport.disconnect();
+			jedis.disconnect();
+			proxy.stop();
+		}
+	}
+
+	/**
+	 * TCP proxy to Redis that can be stopped to make Redis unreachable and started again on the same port
+	 */
+	private static class Proxy {
+		private final String _host;
+		private final int _targetPort;
+		private int _port;
+		private ServerSocket _serverSocket;
+		private final List<Socket> _sockets = Collections.synchronizedList(new ArrayList<Socket>());
+
+		Proxy(String host, int targetPort) {
+			_host = host;
+			_targetPort = targetPort;
+		}
+
+		int getPort() {
+			return _port;
+		}
+
+		void start() throws IOException {
+			final ServerSocket serverSocket = new ServerSocket();
+			serverSocket.setReuseAddress(true);
+			serverSocket.bind(new InetSocketAddress(_host, _port));
+			_serverSocket = serverSocket;
+			_port = serverSocket.getLocalPort();
+
+			Thread acceptor = new Thread(new Runnable() {
+				public void run() {
+					try {
+						while (true) {
+							Socket client = serverSocket.accept();
+							Socket server = new Socket(_host, _targetPort);
+							_sockets.add(client);
+							_sockets.add(server);
+							pipe(client, server);
+							pipe(server, client);
+						}
+					} catch (IOException e) {
+					}
+				}
+			});
+			acceptor.setDaemon(true);
+			acceptor.start();
+		}
+
+		void stop() throws IOException {
+			_serverSocket.close();
+			synchronized (_sockets) {
+				for (Socket socket : _sockets) {
+					socket.close();
+				}
+				_sockets.clear();
+			}
+		}
+
+		private void pipe(final Socket from, final Socket to) {
+			Thread pipe = new Thread(new Runnable() {
+				public void run() {
+					byte[] buffer = new byte[8192];
+					try {
+						InputStream in = from.getInputStream();
+						OutputStream out = to.getOutputStream();
+						int read;
+						while ((read = in.read(buffer)) >= 0) {
+							out.write(buffer, 0, read);
+							out.flush();
+						}
+					} catch (IOException e) {
+					} finally {
+						try {
+							from.close();
+							to.close();
+						} catch (IOException e) {
+						}
+					}
+				}
+			});
+			pipe.setDaemon(true);
+			pipe.start();
+		}
+	}
+}
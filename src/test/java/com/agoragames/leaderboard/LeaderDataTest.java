@@ -27,5 +27,10 @@ public class LeaderDataTest extends TestCase {
 
 		leader.setRank(5);
 		assertEquals(5, leader.getRank());
+
+		assertNull(leader.getScoreComponents());
+		leader.setScoreComponents(new long[] {3, 4});
+		assertEquals(2, leader.getScoreComponents().length);
+		assertEquals(4, leader.getScoreComponent(1));
 	}
 }
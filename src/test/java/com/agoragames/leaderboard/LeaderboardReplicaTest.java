@@ -0,0 +1,153 @@
+package com.agoragames.leaderboard;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import redis.clients.jedis.Jedis;
+
+public class LeaderboardReplicaTest extends TestCase {
+
+	private Jedis _jedis;
+	private Leaderboard _leaderboard;
+	private LeaderboardReplica _replica;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+
+		_leaderboard = new Leaderboard("name");
+		_leaderboard.setPublishChanges(true);
+		_replica = new LeaderboardReplica("name", 10, false, Leaderboard.DEFAULT_REDIS_HOST, Leaderboard.DEFAULT_REDIS_PORT);
+		_jedis = new Jedis(Leaderboard.DEFAULT_REDIS_HOST, Leaderboard.DEFAULT_REDIS_PORT);
+	}
+
+	protected void tearDown() throws Exception {
+		super.tearDown();
+
+		_replica.stop();
+		_jedis.flushDB();
+		_leaderboard.disconnect();
+		_jedis.disconnect();
+	}
+
+	public void testBootstrap() throws Exception {
+		rankMembersInLeaderboard(20);
+
+		_replica.start();
+		assertTrue(_replica.awaitSync(5000));
+
+		List<LeaderData> leaders = _replica.leadersIn(1, false, 5);
+		assertEquals(5, leaders.size());
+		assertEquals("member_20", leaders.get(0).getMember());
+		assertEquals(1, leaders.get(0).getRank());
+		assertEquals("member_16", leaders.get(4).getMember());
+
+		leaders = _replica.leadersIn(2, false, 5);
+		assertEquals("member_15", leaders.get(0).getMember());
+		assertEquals(6, leaders.get(0).getRank());
+
+		assertNull("Page extends past the replicated window", _replica.leadersIn(3, false, 5));
+	}
+
+	public void testFollowsChanges() throws Exception {
+		rankMembersInLeaderboard(20);
+
+		_replica.start();
+		assertTrue(_replica.awaitSync(5000));
+
+		_leaderboard.rankMember("newcomer", 100);
+		_leaderboard.changeScoreFor("member_1", 50);
+		_leaderboard.changeScoreFor("member_20", -20);
+		_leaderboard.removeMembersInScoreRange(19, 19);
+		_leaderboard.rankMember("sentinel", 1000);
+
+		List<LeaderData> replicatedLeaders = awaitReplicatedPage(1, 10, "sentinel");
+		List<LeaderData> leaders = _leaderboard.leadersIn("name", 1, false, 10);
+		assertEquals(leaders.size(), replicatedLeaders.size());
+		for (int i = 0; i < leaders.size(); i++) {
+			assertEquals(leaders.get(i).getMember(), replicatedLeaders.get(i).getMember());
+			assertEquals(leaders.get(i).getScore(), replicatedLeaders.get(i).getScore());
+			assertEquals(leaders.get(i).getRank(), replicatedLeaders.get(i).getRank());
+		}
+	}
+
+	public void testFollowsMemberRemoval() throws Exception {
+		rankMembersInLeaderboard(20);
+
+		_replica.start();
+		assertTrue(_replica.awaitSync(5000));
+
+		List<String> members = new ArrayList<String>();
+		members.add("member_20");
+		members.add("member_1");
+		_leaderboard.removeMembers(members);
+		_leaderboard.rankMember("sentinel", 100);
+
+		List<LeaderData> leaders = awaitReplicatedPage(1, 10, "sentinel");
+		assertEquals("member_19", leaders.get(1).getMember());
+		assertEquals("member_11", leaders.get(9).getMember());
+	}
+
+	public void testFollowsTrim() throws Exception {
+		rankMembersInLeaderboard(5);
+
+		_replica.start();
+		assertTrue(_replica.awaitSync(5000));
+
+		_leaderboard.setMaxMembers(3);
+		_leaderboard.rankMember("sentinel", 100);
+
+		List<LeaderData> leaders = awaitReplicatedPage(1, 10, "sentinel");
+		assertEquals(3, leaders.size());
+		assertEquals("member_4", leaders.get(2).getMember());
+	}
+
+	public void testSmallLeaderboardIsComplete() throws Exception {
+		rankMembersInLeaderboard(3);
+
+		_replica.start();
+		assertTrue(_replica.awaitSync(5000));
+
+		List<LeaderData> leaders = _replica.leadersIn(5, true, 2);
+		assertEquals(1, leaders.size());
+		assertEquals("member_1", leaders.get(0).getMember());
+		assertEquals(2, leaders.get(0).getRank());
+	}
+
+	public void testLeaderboardServesPagesFromReplica() throws Exception {
+		rankMembersInLeaderboard(20);
+
+		_replica.start();
+		assertTrue(_replica.awaitSync(5000));
+		_leaderboard.setReplica(_replica);
+
+		_jedis.zadd("name", 1000, "direct_write");
+
+		List<LeaderData> leaders = _leaderboard.leadersIn("name", 1, false, 5);
+		assertEquals("Unpublished write is not visible in the replicated page", "member_20", leaders.get(0).getMember());
+
+		leaders = _leaderboard.leadersIn("name", 3, false, 5);
+		assertEquals("Page outside the replicated window is read from Redis", 11, leaders.get(0).getRank());
+		assertEquals("member_11", leaders.get(0).getMember());
+	}
+
+	private List<LeaderData> awaitReplicatedPage(int currentPage, int pageSize, String expectedLeader) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		List<LeaderData> leaders = _replica.leadersIn(currentPage, false, pageSize);
+		// A null page means a re-sync is still pending
+		while ((leaders == null || leaders.isEmpty() || !expectedLeader.equals(leaders.get(0).getMember()))
+				&& System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+			leaders = _replica.leadersIn(currentPage, false, pageSize);
+		}
+
+		assertNotNull("Replica did not finish re-syncing", leaders);
+		return leaders;
+	}
+
+	private void rankMembersInLeaderboard(int totalMembers) {
+		for (int i = 1; i <= totalMembers; i++) {
+			_leaderboard.rankMember("member_" + i, i);
+		}
+	}
+}
@@ -5,6 +5,8 @@ import java.util.Hashtable;
 import java.util.List;
 
 import junit.framework.TestCase;
+import redis.clients.jedis.DefaultJedisClientConfig;
+import redis.clients.jedis.HostAndPort;
 import redis.clients.jedis.Jedis;
 
 public class LeaderboardTest extends TestCase {
@@ -28,7 +30,7 @@ public class LeaderboardTest extends TestCase {
 	}
 
 	public void testVersion() {
-		assertEquals("2.0.2", Leaderboard.VERSION);
+		assertEquals("3.0.0", Leaderboard.VERSION);
 	}
 
 	public void testGetLeaderboardName() {
@@ -122,6 +124,60 @@ public class LeaderboardTest extends TestCase {
 		assertEquals(5, _leaderboard.totalMembers());
 	}
 
+	public void testRemoveMembers() {
+		rankMembersInLeaderboard(Leaderboard.DEFAULT_REMOVAL_CHUNK_SIZE + 10);
+
+		List<String> members = new ArrayList<String>();
+		for (int i = 1; i <= Leaderboard.DEFAULT_REMOVAL_CHUNK_SIZE + 5; i++) {
+			members.add("member_" + i);
+		}
+		members.add("no_such_member");
+
+		assertEquals(Leaderboard.DEFAULT_REMOVAL_CHUNK_SIZE + 5, _leaderboard.removeMembers(members));
+		assertEquals(5, _leaderboard.totalMembers());
+		assertTrue(_leaderboard.checkMember("member_" + (Leaderboard.DEFAULT_REMOVAL_CHUNK_SIZE + 6)));
+	}
+
+	public void testRemoveMembersOutsideRank() {
+		rankMembersInLeaderboard(10);
+
+		assertEquals(7, _leaderboard.removeMembersOutsideRank(3));
+		assertEquals(3, _leaderboard.totalMembers());
+		assertTrue(_leaderboard.checkMember("member_8"));
+		assertFalse(_leaderboard.checkMember("member_7"));
+
+		_leaderboard.setReverse(true);
+		assertEquals(1, _leaderboard.removeMembersOutsideRank(2));
+		assertTrue(_leaderboard.checkMember("member_9"));
+		assertFalse(_leaderboard.checkMember("member_10"));
+	}
+
+	public void testUnlinkLeaderboard() {
+		rankMembersInLeaderboard(25);
+
+		assertEquals(25, _leaderboard.unlinkLeaderboardNamed("name"));
+		assertFalse(_jedis.exists("name"));
+
+		assertEquals(0, _leaderboard.unlinkLeaderboard());
+	}
+
+	public void testReconnect() {
+		JedisTransport transport = new JedisTransport(new HostAndPort(Leaderboard.DEFAULT_REDIS_HOST, Leaderboard.DEFAULT_REDIS_PORT),
+			DefaultJedisClientConfig.builder().database(1).build());
+		Leaderboard leaderboard = new Leaderboard("name", Leaderboard.DEFAULT_PAGE_SIZE, false, transport);
+		try {
+			leaderboard.rankMember("member", 1);
+			leaderboard.reconnect();
+			leaderboard.rankMember("member_2", 2);
+
+			assertEquals(2, leaderboard.totalMembers());
+			assertFalse(_jedis.exists("name"));
+			leaderboard.deleteLeaderboard();
+		} finally {
+			leaderboard.disconnect();
+		}
+	}
+
 	public void testScoreAndRankFor() {
 		rankMembersInLeaderboard(5);
 
@@ -234,6 +290,294 @@ public class LeaderboardTest extends TestCase {
    		assertEquals(10.0, rankedMembers.get(2).getScore());
    	}
 
+	public void testSetReverse() {
+		assertFalse(_leaderboard.isReverse());
+
+		_leaderboard.setReverse(true);
+		assertTrue(_leaderboard.isReverse());
+	}
+
+	public void testReverseRankForAndScoreAndRankFor() {
+		_leaderboard.setReverse(true);
+		rankMembersInLeaderboard(5);
+
+		assertEquals(1, (long) _leaderboard.rankFor("member_1", false));
+		assertEquals(3, (long) _leaderboard.rankFor("member_4", true));
+
+		Hashtable<String, Object> data = _leaderboard.scoreAndRankFor("member_5", false);
+		assertEquals(5.0, data.get("score"));
+		assertEquals(5, ((Long) data.get("rank")).longValue());
+	}
+
+	public void testReverseLeadersIn() {
+		Leaderboard reverseLeaderboard = new Leaderboard("name", Leaderboard.DEFAULT_PAGE_SIZE, true, _jedis);
+		rankMembersInLeaderboard(Leaderboard.DEFAULT_PAGE_SIZE + 1);
+
+		List<LeaderData> leaders = reverseLeaderboard.leadersIn(1, false);
+		assertEquals(Leaderboard.DEFAULT_PAGE_SIZE, leaders.size());
+		assertEquals("member_1", leaders.get(0).getMember());
+		assertEquals(1, leaders.get(0).getRank());
+		assertEquals("member_25", leaders.get(leaders.size() - 1).getMember());
+		assertEquals(25, leaders.get(leaders.size() - 1).getRank());
+
+		leaders = reverseLeaderboard.leadersIn(2, true);
+		assertEquals(1, leaders.size());
+		assertEquals("member_26", leaders.get(0).getMember());
+		assertEquals(25, leaders.get(0).getRank());
+	}
+
+	public void testReverseAroundMe() {
+		_leaderboard.setReverse(true);
+		rankMembersInLeaderboard(Leaderboard.DEFAULT_PAGE_SIZE * 3 + 1);
+
+		List<LeaderData> leadersAroundMe = _leaderboard.aroundMe("member_1", false);
+		assertEquals(_leaderboard.getPageSize() / 2 + 1, leadersAroundMe.size());
+		assertEquals("member_1", leadersAroundMe.get(0).getMember());
+
+		leadersAroundMe = _leaderboard.aroundMe("member_30", false);
+		assertEquals(_leaderboard.getPageSize(), leadersAroundMe.size());
+		assertEquals(18, leadersAroundMe.get(0).getRank());
+	}
+
+	public void testReverseRankedInList() {
+		_leaderboard.setReverse(true);
+		rankMembersInLeaderboard(Leaderboard.DEFAULT_PAGE_SIZE);
+
+		List<String> members = new ArrayList<String>();
+		members.add("member_1");
+		members.add("member_5");
+		members.add("no_such_member");
+
+		List<LeaderData> rankedMembers = _leaderboard.rankedInList(members, false);
+		assertEquals(2, rankedMembers.size());
+
+		assertEquals(1, rankedMembers.get(0).getRank());
+		assertEquals(1.0, rankedMembers.get(0).getScore());
+
+		assertEquals(5, rankedMembers.get(1).getRank());
+		assertEquals(5.0, rankedMembers.get(1).getScore());
+	}
+
+	public void testPublishChanges() {
+		assertFalse(_leaderboard.isPublishingChanges());
+
+		_leaderboard.setPublishChanges(true);
+		assertTrue(_leaderboard.isPublishingChanges());
+
+		_leaderboard.rankMember("member", 5);
+		assertEquals(7.5, _leaderboard.changeScoreFor("member", 2.5));
+		assertEquals(7.5, _leaderboard.scoreFor("member"));
+		assertEquals(1, _leaderboard.removeMembersInScoreRange(7, 8));
+	}
+
+	public void testSetReplicaWithMismatchedOrder() {
+		LeaderboardReplica replica = new LeaderboardReplica("name", 10, true, _jedis, _jedis);
+
+		try {
+			_leaderboard.setReplica(replica);
+			fail("Replica with a different sort order should be rejected");
+		} catch (IllegalArgumentException e) {
+			assertNull(_leaderboard.getReplica());
+		}
+	}
+
+	public void testSetWriteMode() {
+		assertEquals(WriteMode.ALWAYS, _leaderboard.getWriteMode());
+
+		_leaderboard.setWriteMode(WriteMode.KEEP_BEST);
+		assertEquals(WriteMode.KEEP_BEST, _leaderboard.getWriteMode());
+
+		_leaderboard.setWriteMode(null);
+		assertEquals(WriteMode.ALWAYS, _leaderboard.getWriteMode());
+	}
+
+	public void testRankMemberOnlyIfNewAndOnlyIfExisting() {
+		assertEquals(0, _leaderboard.rankMember("member", 5, WriteMode.ONLY_IF_EXISTING));
+		assertNull(_leaderboard.scoreFor("member"));
+
+		assertEquals(1, _leaderboard.rankMember("member", 5, WriteMode.ONLY_IF_NEW));
+		assertEquals(0, _leaderboard.rankMember("member", 10, WriteMode.ONLY_IF_NEW));
+		assertEquals(5.0, _leaderboard.scoreFor("member"));
+
+		_leaderboard.rankMember("member", 10, WriteMode.ONLY_IF_EXISTING);
+		assertEquals(10.0, _leaderboard.scoreFor("member"));
+	}
+
+	public void testRankMemberOnlyIfGreaterAndOnlyIfLess() {
+		assertEquals(1, _leaderboard.rankMember("member", 5, WriteMode.ONLY_IF_GREATER));
+
+		_leaderboard.rankMember("member", 3, WriteMode.ONLY_IF_GREATER);
+		assertEquals(5.0, _leaderboard.scoreFor("member"));
+		_leaderboard.rankMember("member", 8, WriteMode.ONLY_IF_GREATER);
+		assertEquals(8.0, _leaderboard.scoreFor("member"));
+
+		_leaderboard.rankMember("member", 9, WriteMode.ONLY_IF_LESS);
+		assertEquals(8.0, _leaderboard.scoreFor("member"));
+		_leaderboard.rankMember("member", 2, WriteMode.ONLY_IF_LESS);
+		assertEquals(2.0, _leaderboard.scoreFor("member"));
+	}
+
+	public void testRankMemberKeepBest() {
+		_leaderboard.setWriteMode(WriteMode.KEEP_BEST);
+
+		_leaderboard.rankMember("member", 5);
+		_leaderboard.rankMember("member", 3);
+		assertEquals(5.0, _leaderboard.scoreFor("member"));
+
+		_leaderboard.setReverse(true);
+		_leaderboard.rankMember("member", 3);
+		_leaderboard.rankMember("member", 4);
+		assertEquals(3.0, _leaderboard.scoreFor("member"));
+	}
+
+	public void testMaxMembers() {
+		_leaderboard.setMaxMembers(10);
+		assertEquals(10, _leaderboard.getMaxMembers());
+
+		rankMembersInLeaderboard(15);
+		assertEquals(10, _leaderboard.totalMembers());
+		assertFalse(_leaderboard.checkMember("member_5"));
+		assertTrue(_leaderboard.checkMember("member_6"));
+
+		_leaderboard.changeScoreFor("newcomer", 100);
+		assertEquals(10, _leaderboard.totalMembers());
+		assertFalse(_leaderboard.checkMember("member_6"));
+
+		_leaderboard.setMaxMembers(0);
+		assertEquals(0, _leaderboard.getMaxMembers());
+	}
+
+	public void testMaxMembersInReverse() {
+		_leaderboard.setReverse(true);
+		_leaderboard.setMaxMembers(10);
+
+		rankMembersInLeaderboard(15);
+		assertEquals(10, _leaderboard.totalMembers());
+		assertTrue(_leaderboard.checkMember("member_10"));
+		assertFalse(_leaderboard.checkMember("member_11"));
+	}
+
+	public void testRankMemberWithComponents() {
+		try {
+			_leaderboard.rankMemberWithComponents("member", 1, 1);
+			fail("Composite score without a format should be rejected");
+		} catch (IllegalStateException e) {
+		}
+
+		_leaderboard.setScoreFormat(new CompositeScoreFormat(new int[] {20, 33}, new boolean[] {false, true}));
+		_leaderboard.rankMemberWithComponents("later", 100, 1319500900L);
+		_leaderboard.rankMemberWithComponents("earlier", 100, 1319500800L);
+		_leaderboard.rankMemberWithComponents("best", 101, 1319501000L);
+
+		List<LeaderData> leaders = _leaderboard.leadersIn(1, false);
+		assertEquals("best", leaders.get(0).getMember());
+		assertEquals("earlier", leaders.get(1).getMember());
+		assertEquals(100, leaders.get(1).getScoreComponent(0));
+		assertEquals(1319500800L, leaders.get(1).getScoreComponent(1));
+		assertEquals("later", leaders.get(2).getMember());
+
+		leaders = _leaderboard.aroundMe("later", false);
+		assertEquals(1319500900L, leaders.get(2).getScoreComponent(1));
+
+		List<String> members = new ArrayList<String>();
+		members.add("earlier");
+		leaders = _leaderboard.rankedInList(members, false);
+		assertEquals(2, leaders.get(0).getRank());
+		assertEquals(100, leaders.get(0).getScoreComponent(0));
+	}
+
+	public void testTrackRankChanges() {
+		_leaderboard.setTrackRankChanges(true);
+		assertTrue(_leaderboard.isTrackingRankChanges());
+		assertEquals(1, _leaderboard.getSnapshotRetention());
+		assertEquals(Leaderboard.DEFAULT_SNAPSHOT_MAX_MEMBERS, _leaderboard.getSnapshotMaxMembers());
+
+		rankMembersInLeaderboard(5);
+		assertEquals(5, _leaderboard.snapshotRanks());
+
+		_leaderboard.rankMember("member_1", 10);
+		_leaderboard.changeScoreFor("member_2", 20);
+
+		List<LeaderData> leaders = _leaderboard.leadersIn(1, false);
+		assertEquals("member_2", leaders.get(0).getMember());
+		assertEquals(2.0, leaders.get(0).getPreviousScore());
+		assertEquals(5, (long) leaders.get(0).getPreviousRank());
+		assertEquals(3, (long) leaders.get(0).getRankDelta());
+
+		assertEquals("member_1", leaders.get(1).getMember());
+		assertEquals(1.0, leaders.get(1).getPreviousScore());
+		assertEquals(5, (long) leaders.get(1).getPreviousRank());
+		assertEquals(3, (long) leaders.get(1).getRankDelta());
+
+		assertEquals("member_5", leaders.get(2).getMember());
+		assertNull(leaders.get(2).getPreviousRank());
+		assertEquals(-2, (long) leaders.get(2).getRankDelta());
+
+		List<String> members = new ArrayList<String>();
+		members.add("member_1");
+		leaders = _leaderboard.rankedInList(members, true);
+		assertEquals(4, (long) leaders.get(0).getPreviousRank());
+		assertEquals(3, (long) leaders.get(0).getRankDelta());
+
+		_leaderboard.deleteLeaderboard();
+		assertFalse(_jedis.exists("name:previous"));
+		assertFalse(_jedis.exists("name:snapshot:0"));
+	}
+
+	public void testRepeatedWriteKeepsPreviousRank() {
+		_leaderboard.setTrackRankChanges(true);
+
+		rankMembersInLeaderboard(5);
+		_leaderboard.rankMember("member_1", 10);
+		String previous = _jedis.hget("name:previous", "member_1");
+		assertNotNull(previous);
+
+		assertEquals(0, _leaderboard.rankMember("member_1", 10));
+		assertEquals(previous, _jedis.hget("name:previous", "member_1"));
+	}
+
+	public void testRankHistoryStaysBounded() {
+		_leaderboard.setTrackRankChanges(true);
+		_leaderboard.setMaxMembers(10);
+
+		for (int i = 1; i <= 25; i++) {
+			_leaderboard.rankMember("member_" + i, i);
+			_leaderboard.rankMember("member_" + i, i + 0.5);
+		}
+
+		assertEquals(10, _leaderboard.totalMembers());
+		assertEquals(10, _jedis.hlen("name:previous"));
+
+		assertEquals(2, _leaderboard.removeMembersInScoreRange(16, 17.5));
+		assertEquals(8, _jedis.hlen("name:previous"));
+
+		assertEquals(3, _leaderboard.removeMembersOutsideRank(5));
+		assertEquals(5, _jedis.hlen("name:previous"));
+		assertFalse(_jedis.hexists("name:previous", "member_18"));
+		assertTrue(_jedis.hexists("name:previous", "member_25"));
+	}
+
+	public void testSnapshotRetention() {
+		_leaderboard.setTrackRankChanges(true);
+		_leaderboard.setSnapshotRetention(2);
+		assertEquals(2, _leaderboard.getSnapshotRetention());
+		_leaderboard.setSnapshotMaxMembers(3);
+		assertEquals(3, _leaderboard.getSnapshotMaxMembers());
+
+		rankMembersInLeaderboard(5);
+		assertEquals(3, _leaderboard.snapshotRanks());
+		_leaderboard.snapshotRanks();
+		_leaderboard.snapshotRanks();
+
+		assertTrue(_jedis.exists("name:snapshot:0"));
+		assertTrue(_jedis.exists("name:snapshot:1"));
+		assertFalse(_jedis.exists("name:snapshot:2"));
+
+		List<LeaderData> leaders = _leaderboard.leadersIn(1, false);
+		assertEquals(0, (long) leaders.get(0).getRankDelta());
+		assertNull("Members outside the snapshot have no rank change", leaders.get(4).getRankDelta());
+	}
+
 	private void rankMembersInLeaderboard(int totalMembers) {
 		for (int i = 1; i <= totalMembers; i++) {
 			_leaderboard.rankMember("member_" + i, i);
@@ -0,0 +1,301 @@
+package com.agoragames.leaderboard;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.exceptions.JedisDataException;
+
+public class ResilientLeaderboardTest extends TestCase {
+
+	private Jedis _jedis;
+	private FlakyLeaderboard _leaderboard;
+	private ResilientLeaderboard _resilientLeaderboard;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+
+		_jedis = new Jedis(Leaderboard.DEFAULT_REDIS_HOST, Leaderboard.DEFAULT_REDIS_PORT);
+		_leaderboard = new FlakyLeaderboard(new Jedis(Leaderboard.DEFAULT_REDIS_HOST, Leaderboard.DEFAULT_REDIS_PORT));
+		_resilientLeaderboard = new ResilientLeaderboard(_leaderboard, new CircuitBreaker(3, 60000));
+		_resilientLeaderboard.setRetryBackoff(0);
+	}
+
+	protected void tearDown() throws Exception {
+		super.tearDown();
+
+		_jedis.flushDB();
+		_resilientLeaderboard.disconnect();
+		_jedis.disconnect();
+	}
+
+	public void testOperations() {
+		rankMembersInLeaderboard(5);
+
+		assertEquals(5, _resilientLeaderboard.totalMembers());
+		assertEquals(6.0, _resilientLeaderboard.changeScoreFor("member_1", 5));
+		assertEquals(1, (long) _resilientLeaderboard.rankFor("member_1", false));
+
+		List<LeaderData> leaders = _resilientLeaderboard.leadersIn(1, false);
+		assertEquals(5, leaders.size());
+		assertEquals("member_1", leaders.get(0).getMember());
+	}
+
+	public void testRetriesIdempotentOperations() {
+		rankMembersInLeaderboard(5);
+		_leaderboard.failures = 2;
+
+		assertEquals(5, _resilientLeaderboard.leadersIn(1, false).size());
+		assertEquals(3, _leaderboard.calls);
+		assertEquals(CircuitBreaker.State.CLOSED, _resilientLeaderboard.getCircuitBreaker().getState());
+	}
+
+	public void testRetriesCountAsOneFailure() {
+		_leaderboard.failures = 100;
+
+		for (int i = 0; i < 2; i++) {
+			try {
+				_resilientLeaderboard.leadersIn(1, false);
+				fail("Operation should fail");
+			} catch (LeaderboardUnavailableException e) {
+			}
+		}
+
+		assertEquals(6, _leaderboard.calls);
+		assertEquals(CircuitBreaker.State.CLOSED, _resilientLeaderboard.getCircuitBreaker().getState());
+	}
+
+	public void testRetriedWriteKeepsPreviousRank() {
+		_leaderboard.setTrackRankChanges(true);
+		rankMembersInLeaderboard(5);
+		_leaderboard.writes = 0;
+		_leaderboard.failuresAfterWrite = 1;
+
+		_resilientLeaderboard.rankMember("member_1", 10);
+		assertEquals(2, _leaderboard.writes);
+
+		List<LeaderData> leaders = _resilientLeaderboard.leadersIn(1, false);
+		assertEquals("member_1", leaders.get(0).getMember());
+		assertEquals(1.0, leaders.get(0).getPreviousScore());
+		assertEquals(5, (long) leaders.get(0).getPreviousRank());
+	}
+
+	public void testDoesNotRetryIncrements() {
+		_leaderboard.failures = 1;
+
+		try {
+			_resilientLeaderboard.changeScoreFor("member", 5);
+			fail("Increment should not be retried");
+		} catch (LeaderboardUnavailableException e) {
+			assertEquals(1, _leaderboard.calls);
+			assertNull(_jedis.zscore("name", "member"));
+		}
+	}
+
+	public void testCircuitBreakerFailsFast() {
+		_resilientLeaderboard.setMaxRetries(0);
+		_leaderboard.failures = 100;
+
+		for (int i = 0; i < 3; i++) {
+			try {
+				_resilientLeaderboard.leadersIn(1, false);
+				fail("Operation should fail");
+			} catch (LeaderboardUnavailableException e) {
+			}
+		}
+
+		assertEquals(CircuitBreaker.State.OPEN, _resilientLeaderboard.getCircuitBreaker().getState());
+
+		try {
+			_resilientLeaderboard.leadersIn(1, false);
+			fail("Operation should be rejected by the circuit breaker");
+		} catch (LeaderboardUnavailableException e) {
+			assertEquals(3, _leaderboard.calls);
+		}
+	}
+
+	public void testTimeout() {
+		_resilientLeaderboard.setMaxRetries(0);
+		_resilientLeaderboard.setTimeout("leadersIn", 50);
+		assertEquals(50, _resilientLeaderboard.getTimeout("leadersIn"));
+		assertEquals(ResilientLeaderboard.DEFAULT_TIMEOUT_MILLIS, _resilientLeaderboard.getTimeout("rankMemberIn"));
+
+		_leaderboard.delayMillis = 1000;
+		long start = System.currentTimeMillis();
+		try {
+			_resilientLeaderboard.leadersIn(1, false);
+			fail("Operation should time out");
+		} catch (LeaderboardUnavailableException e) {
+			assertTrue(System.currentTimeMillis() - start < 1000);
+		}
+
+		_leaderboard.delayMillis = 0;
+		_resilientLeaderboard.rankMember("member", 1);
+		assertEquals(1, _resilientLeaderboard.totalMembers());
+	}
+
+	public void testQueuedTimeoutKeepsConnection() throws InterruptedException {
+		rankMembersInLeaderboard(5);
+		_resilientLeaderboard.setMaxRetries(0);
+		_resilientLeaderboard.setTimeout("leadersIn", 5000);
+		_resilientLeaderboard.setTimeout("totalMembersIn", 50);
+		_leaderboard.delayMillis = 500;
+
+		final List<List<LeaderData>> pages = Collections.synchronizedList(new ArrayList<List<LeaderData>>());
+		Thread reader = new Thread(new Runnable() {
+			public void run() {
+				pages.add(_resilientLeaderboard.leadersIn(1, false));
+			}
+		});
+		reader.start();
+		while (_leaderboard.calls == 0) {
+			Thread.sleep(1);
+		}
+
+		try {
+			_resilientLeaderboard.totalMembers();
+			fail("Queued operation should time out");
+		} catch (LeaderboardUnavailableException e) {
+		}
+
+		reader.join();
+		assertEquals(1, pages.size());
+		assertEquals(5, pages.get(0).size());
+		assertEquals(0, _leaderboard.reconnects);
+		assertEquals(CircuitBreaker.State.CLOSED, _resilientLeaderboard.getCircuitBreaker().getState());
+	}
+
+	public void testInterruptedTrialIsReleased() throws Exception {
+		final ResilientLeaderboard resilientLeaderboard = new ResilientLeaderboard(_leaderboard, new CircuitBreaker(1, 10));
+		resilientLeaderboard.setMaxRetries(0);
+		rankMembersInLeaderboard(5);
+
+		_leaderboard.failures = 1;
+		try {
+			resilientLeaderboard.leadersIn(1, false);
+			fail("Operation should fail");
+		} catch (LeaderboardUnavailableException e) {
+		}
+		Thread.sleep(20);
+		assertEquals(CircuitBreaker.State.HALF_OPEN, resilientLeaderboard.getCircuitBreaker().getState());
+
+		_leaderboard.delayMillis = 1000;
+		Thread trial = new Thread(new Runnable() {
+			public void run() {
+				try {
+					resilientLeaderboard.leadersIn(1, false);
+				} catch (LeaderboardUnavailableException e) {
+				}
+			}
+		});
+		trial.start();
+		while (_leaderboard.calls < 2) {
+			Thread.sleep(1);
+		}
+		trial.interrupt();
+		trial.join();
+
+		_leaderboard.delayMillis = 0;
+		try {
+			assertEquals(5, resilientLeaderboard.leadersIn(1, false).size());
+			assertEquals(CircuitBreaker.State.CLOSED, resilientLeaderboard.getCircuitBreaker().getState());
+		} finally {
+			resilientLeaderboard.disconnect();
+		}
+	}
+
+	public void testStaleReads() {
+		rankMembersInLeaderboard(5);
+		_resilientLeaderboard.setStaleReads(true);
+		_resilientLeaderboard.setMaxRetries(0);
+
+		assertEquals(5, _resilientLeaderboard.leadersIn(1, false).size());
+
+		_leaderboard.failures = 100;
+		List<LeaderData> leaders = _resilientLeaderboard.leadersIn(1, false);
+		assertEquals(5, leaders.size());
+		assertEquals("member_5", leaders.get(0).getMember());
+
+		try {
+			_resilientLeaderboard.leadersIn(2, false);
+			fail("Page that was never read has no stale copy");
+		} catch (LeaderboardUnavailableException e) {
+		}
+	}
+
+	public void testCommandErrorsAreNotRetried() {
+		_jedis.set("name", "not a leaderboard");
+
+		try {
+			_resilientLeaderboard.totalMembers();
+			fail("Command error should be thrown");
+		} catch (JedisDataException e) {
+			assertEquals(CircuitBreaker.State.CLOSED, _resilientLeaderboard.getCircuitBreaker().getState());
+		}
+	}
+
+	private void rankMembersInLeaderboard(int totalMembers) {
+		for (int i = 1; i <= totalMembers; i++) {
+			_resilientLeaderboard.rankMember("member_" + i, i);
+		}
+	}
+
+	private static class FlakyLeaderboard extends Leaderboard {
+		volatile int failures;
+		volatile int failuresAfterWrite;
+		volatile int calls;
+		volatile int writes;
+		volatile int reconnects;
+		volatile long delayMillis;
+
+		FlakyLeaderboard(Jedis redisConnection) {
+			super("name", Leaderboard.DEFAULT_PAGE_SIZE, redisConnection);
+		}
+
+		public List<LeaderData> leadersIn(String leaderboardName, int currentPage, boolean useZeroIndexForRank, int pageSize) {
+			simulateFailure();
+			return super.leadersIn(leaderboardName, currentPage, useZeroIndexForRank, pageSize);
+		}
+
+		public long rankMemberIn(String leaderboardName, String member, double score, WriteMode writeMode) {
+			long added = super.rankMemberIn(leaderboardName, member, score, writeMode);
+			writes++;
+
+			if (failuresAfterWrite > 0) {
+				failuresAfterWrite--;
+				throw new RedisConnectionException("Read timed out");
+			}
+
+			return added;
+		}
+
+		public double changeScoreForMemberIn(String leaderboardName, String member, double delta) {
+			simulateFailure();
+			return super.changeScoreForMemberIn(leaderboardName, member, delta);
+		}
+
+		public void reconnect() {
+			reconnects++;
+			super.reconnect();
+		}
+
+		private void simulateFailure() {
+			calls++;
+
+			if (failures > 0) {
+				failures--;
+				throw new RedisConnectionException("Connection refused");
+			}
+
+			if (delayMillis > 0) {
+				try {
+					Thread.sleep(delayMillis);
+				} catch (InterruptedException e) {
+					throw new RedisConnectionException(e);
+				}
+			}
+		}
+	}
+}
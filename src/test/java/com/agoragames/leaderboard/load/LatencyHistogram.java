@@ -0,0 +1,113 @@
+package com.agoragames.leaderboard.load;
+
+/**
+ * Log-linear latency histogram with a relative error of under 2%. Values below
+ * 128 nanoseconds are recorded exactly; above that, each power of two is split
+ * into 64 buckets.
+ *
+ * Not thread safe: record into one histogram per thread and merge the results.
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 6;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int LINEAR_BUCKETS = SUB_BUCKETS * 2;
+
+	private long[] _counts = new long[LINEAR_BUCKETS + (64 - SUB_BUCKET_BITS) * SUB_BUCKETS];
+	private long _totalCount;
+	private long _maxValue;
+
+	/**
+	 * Record a latency
+	 *
+	 * @param nanos Latency in nanoseconds
+	 */
+	public void record(long nanos) {
+		if (nanos < 0) {
+			nanos = 0;
+		}
+
+		_counts[bucketFor(nanos)]++;
+		_totalCount++;
+		if (nanos > _maxValue) {
+			_maxValue = nanos;
+		}
+	}
+
+	/**
+	 * Add the latencies recorded in another histogram
+	 *
+	 * @param other Histogram
+	 */
+	public void add(LatencyHistogram other) {
+		for (int i = 0; i < _counts.length; i++) {
+			_counts[i] += other._counts[i];
+		}
+		_totalCount += other._totalCount;
+		_maxValue = Math.max(_maxValue, other._maxValue);
+	}
+
+	/**
+	 * Get the number of latencies recorded
+	 *
+	 * @return Number of latencies
+	 */
+	public long getTotalCount() {
+		return _totalCount;
+	}
+
+	/**
+	 * Get the largest latency recorded
+	 *
+	 * @return Latency in nanoseconds
+	 */
+	public long getMaxValue() {
+		return _maxValue;
+	}
+
+	/**
+	 * Get the latency at a percentile, reported as the upper bound of its bucket
+	 *
+	 * @param percentile Percentile between 0 and 100
+	 * @return Latency in nanoseconds, or 0 if nothing was recorded
+	 */
+	public long getValueAtPercentile(double percentile) {
+		if (_totalCount == 0) {
+			return 0;
+		}
+
+		long rank = (long) Math.ceil(percentile / 100.0 * _totalCount);
+		if (rank < 1) {
+			rank = 1;
+		}
+
+		long cumulativeCount = 0;
+		for (int i = 0; i < _counts.length; i++) {
+			cumulativeCount += _counts[i];
+			if (cumulativeCount >= rank) {
+				return Math.min(highestValueIn(i), _maxValue);
+			}
+		}
+
+		return _maxValue;
+	}
+
+	static int bucketFor(long value) {
+		if (value < LINEAR_BUCKETS) {
+			return (int) value;
+		}
+
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		return LINEAR_BUCKETS + (shift - 1) * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+	}
+
+	static long highestValueIn(int bucket) {
+		if (bucket < LINEAR_BUCKETS) {
+			return bucket;
+		}
+
+		int shift = (bucket - LINEAR_BUCKETS) / SUB_BUCKETS + 1;
+		long subBucket = (bucket - LINEAR_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS;
+		return ((subBucket + 1) << shift) - 1;
+	}
+}
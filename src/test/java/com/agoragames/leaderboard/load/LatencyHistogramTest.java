@@ -0,0 +1,96 @@
+package com.agoragames.leaderboard.load;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class LatencyHistogramTest extends TestCase {
+
+	public void testBucketBoundaries() {
+		assertEquals(0, LatencyHistogram.bucketFor(0));
+		assertEquals(127, LatencyHistogram.bucketFor(127));
+		assertEquals(127, LatencyHistogram.highestValueIn(127));
+
+		assertEquals(128, LatencyHistogram.bucketFor(128));
+		assertEquals(128, LatencyHistogram.bucketFor(129));
+		assertEquals(129, LatencyHistogram.highestValueIn(128));
+		assertEquals(129, LatencyHistogram.bucketFor(130));
+
+		assertEquals(LatencyHistogram.bucketFor(255) + 1, LatencyHistogram.bucketFor(256));
+		assertEquals(255, LatencyHistogram.highestValueIn(LatencyHistogram.bucketFor(255)));
+	}
+
+	public void testBucketsCoverEveryValue() {
+		for (long value = 1; value < 1 << 20; value++) {
+			assertBucketHolds(value);
+		}
+
+		for (int bits = 20; bits < 63; bits++) {
+			long value = 1L << bits;
+			assertBucketHolds(value - 1);
+			assertBucketHolds(value);
+			assertBucketHolds(value + (value >>> 1));
+		}
+		assertBucketHolds(Long.MAX_VALUE);
+	}
+
+	public void testPercentileError() {
+		Random random = new Random(42);
+		long[] values = new long[100000];
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 0; i < values.length; i++) {
+			values[i] = (long) Math.exp(12 + 2 * random.nextGaussian());
+			histogram.record(values[i]);
+		}
+		Arrays.sort(values);
+
+		assertEquals(values.length, histogram.getTotalCount());
+		assertEquals(values[values.length - 1], histogram.getMaxValue());
+
+		double[] percentiles = { 1, 10, 50, 90, 99, 99.9, 99.99, 100 };
+		for (double percentile : percentiles) {
+			long exact = values[(int) Math.ceil(percentile / 100.0 * values.length) - 1];
+			long reported = histogram.getValueAtPercentile(percentile);
+			assertTrue("p" + percentile + " " + reported + " below " + exact, reported >= exact);
+			assertTrue("p" + percentile + " " + reported + " more than 2% above " + exact, reported - exact <= exact * 0.02);
+		}
+	}
+
+	public void testEmptyHistogram() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(0, histogram.getTotalCount());
+		assertEquals(0, histogram.getValueAtPercentile(99));
+	}
+
+	public void testAdd() {
+		Random random = new Random(7);
+		LatencyHistogram first = new LatencyHistogram();
+		LatencyHistogram second = new LatencyHistogram();
+		LatencyHistogram all = new LatencyHistogram();
+		for (int i = 0; i < 10000; i++) {
+			long value = random.nextInt(50000000);
+			(i % 3 == 0 ? first : second).record(value);
+			all.record(value);
+		}
+
+		long secondCount = second.getTotalCount();
+		first.add(second);
+		assertEquals(secondCount, second.getTotalCount());
+		assertEquals(all.getTotalCount(), first.getTotalCount());
+		assertEquals(all.getMaxValue(), first.getMaxValue());
+		for (int percentile = 1; percentile <= 100; percentile++) {
+			assertEquals(all.getValueAtPercentile(percentile), first.getValueAtPercentile(percentile));
+		}
+	}
+
+	private void assertBucketHolds(long value) {
+		int bucket = LatencyHistogram.bucketFor(value);
+		long highest = LatencyHistogram.highestValueIn(bucket);
+		long lowest = LatencyHistogram.highestValueIn(bucket - 1) + 1;
+
+		assertTrue(value + " above bucket " + bucket, value <= highest);
+		assertTrue(value + " below bucket " + bucket, value >= lowest);
+		assertTrue(value + " in a bucket wider than 2%", highest - lowest <= lowest * 0.02);
+	}
+}
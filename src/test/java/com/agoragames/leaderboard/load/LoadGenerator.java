@@ -0,0 +1,391 @@
+package com.agoragames.leaderboard.load;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.net.ServerSocket;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+
+import com.agoragames.leaderboard.JedisTransport;
+import com.agoragames.leaderboard.Leaderboard;
+import com.agoragames.leaderboard.WriteMode;
+
+/**
+ * Replays a trace of leaderboard operations against Redis at a target rate and
+ * reports throughput and latency percentiles per operation.
+ *
+ * Scheduling is open loop: every operation has an intended start time taken from
+ * the trace, and its latency is measured from that time rather than from when a
+ * thread got around to sending it. When Redis falls behind, the queueing delay
+ * shows up in the latencies instead of silently lowering the offered load.
+ *
+ * Run it with, for example:
+ *
+ *     mvn test-compile exec:java -Dexec.classpathScope=test \
+ *         -Dexec.mainClass=com.agoragames.leaderboard.load.LoadGenerator \
+ *         -Dexec.args="--rate 20000 --duration 60 --threads 16"
+ *
+ * By default a redis-server is spawned on a free port for the run. Pass --port
+ * to use a Redis instance that is already running instead. Pass --slo with
+ * objectives such as leadersIn:p99=5 to exit with status 1 if any is breached.
+ */
+public class LoadGenerator {
+
+	public static final String LEADERBOARD_NAME = "load";
+	public static final long START_DELAY_NANOS = 100000000L;
+
+	private String _host = Leaderboard.DEFAULT_REDIS_HOST;
+	private int _port;
+	private int _threads = 8;
+	private int _pageSize = Leaderboard.DEFAULT_PAGE_SIZE;
+	private boolean _reverse;
+	private int _maxMembers;
+	private WriteMode _writeMode = WriteMode.ALWAYS;
+	private boolean _trackRankChanges;
+
+	/**
+	 * Create a load generator against a Redis instance
+	 *
+	 * @param host Redis host
+	 * @param port Redis port
+	 */
+	public LoadGenerator(String host, int port) {
+		_host = host;
+		_port = port;
+	}
+
+	public static void main(String[] args) throws Exception {
+		Map<String, String> options = parseOptions(args);
+
+		double rate = Double.parseDouble(option(options, "rate", "5000"));
+		int duration = Integer.parseInt(option(options, "duration", "30"));
+		int totalMembers = Integer.parseInt(option(options, "members", "100000"));
+		Map<Operation, Integer> mix = parseMix(option(options, "mix", "leadersIn=40,aroundMeIn=40,rankMemberIn=15,rankedInListIn=5"));
+		List<ServiceLevelObjective> objectives = options.containsKey("slo") ? ServiceLevelObjective.parseAll(options.get("slo")) : new ArrayList<ServiceLevelObjective>();
+
+		List<String> breaches;
+		Process redisServer = null;
+		int port;
+		if (options.containsKey("port")) {
+			port = Integer.parseInt(options.get("port"));
+		} else {
+			port = freePort();
+			redisServer = spawnRedis(option(options, "redis-server", "redis-server"), port);
+		}
+
+		try {
+			LoadGenerator generator = new LoadGenerator(option(options, "host", Leaderboard.DEFAULT_REDIS_HOST), port);
+			generator._threads = Integer.parseInt(option(options, "threads", "8"));
+			generator._pageSize = Integer.parseInt(option(options, "page-size", String.valueOf(Leaderboard.DEFAULT_PAGE_SIZE)));
+			generator._reverse = options.containsKey("reverse");
+			generator._maxMembers = Integer.parseInt(option(options, "max-members", "0"));
+			generator._writeMode = WriteMode.valueOf(option(options, "write-mode", WriteMode.ALWAYS.name()));
+			generator._trackRankChanges = options.containsKey("track-rank-changes");
+
+			Trace trace;
+			if (options.containsKey("trace")) {
+				trace = Trace.read(new File(options.get("trace")));
+				if (options.containsKey("rate")) {
+					trace = trace.atRate(rate);
+				}
+			} else {
+				trace = Trace.synthetic((int) (rate * duration), rate, mix, totalMembers, generator._pageSize, new Random(42));
+			}
+
+			if (options.containsKey("record")) {
+				trace.write(new File(options.get("record")));
+			}
+
+			if (!options.containsKey("no-seed")) {
+				generator.seed(totalMembers);
+			}
+
+			System.out.println("Replaying " + trace.size() + " operations on " + generator._threads + " threads");
+			Report report = generator.run(trace);
+			report.print(System.out);
+			breaches = report.check(objectives);
+		} finally {
+			if (redisServer != null) {
+				redisServer.destroy();
+				redisServer.waitFor();
+			}
+		}
+
+		if (!breaches.isEmpty()) {
+			for (String breach : breaches) {
+				System.err.println("SLO breached: " + breach);
+			}
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Replace the leaderboard with the given number of members, scored 1 to totalMembers
+	 *
+	 * @param totalMembers Number of members
+	 */
+	public void seed(int totalMembers) {
+		Jedis jedis = new Jedis(_host, _port);
+		try {
+			jedis.del(LEADERBOARD_NAME);
+			Pipeline pipeline = jedis.pipelined();
+			for (int i = 1; i <= totalMembers; i++) {
+				pipeline.zadd(LEADERBOARD_NAME, i, "member_" + i);
+				if (i % 10000 == 0) {
+					pipeline.sync();
+					pipeline = jedis.pipelined();
+				}
+			}
+			pipeline.sync();
+		} finally {
+			jedis.disconnect();
+		}
+	}
+
+	/**
+	 * Replay a trace and collect latencies
+	 *
+	 * @param trace Trace
+	 * @return Report
+	 * @throws InterruptedException if interrupted while waiting for the replay to finish
+	 */
+	public Report run(final Trace trace) throws InterruptedException {
+		final List<Trace.Entry> entries = trace.getEntries();
+		final AtomicInteger cursor = new AtomicInteger();
+		final long startNanos = System.nanoTime() + START_DELAY_NANOS;
+		final Report[] reports = new Report[_threads];
+
+		Thread[] workers = new Thread[_threads];
+		for (int i = 0; i < _threads; i++) {
+			final Report report = new Report();
+			reports[i] = report;
+			workers[i] = new Thread(new Runnable() {
+				public void run() {
+					Leaderboard leaderboard = newLeaderboard();
+					try {
+						int index;
+						while ((index = cursor.getAndIncrement()) < entries.size()) {
+							Trace.Entry entry = entries.get(index);
+							long intendedStartNanos = startNanos + entry.getOffsetNanos();
+
+							long waitNanos;
+							while ((waitNanos = intendedStartNanos - System.nanoTime()) > 0) {
+								LockSupport.parkNanos(waitNanos);
+							}
+
+							boolean failed = false;
+							try {
+								execute(leaderboard, entry);
+							} catch (RuntimeException e) {
+								failed = true;
+							}
+							report.record(entry.getOperation(), System.nanoTime() - intendedStartNanos, failed);
+						}
+					} finally {
+						leaderboard.disconnect();
+					}
+				}
+			}, "load-generator-" + i);
+			workers[i].start();
+		}
+
+		for (Thread worker : workers) {
+			worker.join();
+		}
+
+		Report report = new Report();
+		for (Report threadReport : reports) {
+			report.add(threadReport);
+		}
+		report.setElapsedNanos(System.nanoTime() - startNanos);
+		report.setOfferedRate(entries.isEmpty() ? 0 : entries.size() * 1e9 / Math.max(1, entries.get(entries.size() - 1).getOffsetNanos()));
+		return report;
+	}
+
+	private Leaderboard newLeaderboard() {
+		Leaderboard leaderboard = new Leaderboard(LEADERBOARD_NAME, _pageSize, _reverse, new JedisTransport(_host, _port));
+		leaderboard.setMaxMembers(_maxMembers);
+		leaderboard.setWriteMode(_writeMode);
+		leaderboard.setTrackRankChanges(_trackRankChanges);
+		return leaderboard;
+	}
+
+	private void execute(Leaderboard leaderboard, Trace.Entry entry) {
+		String[] arguments = entry.getArguments();
+
+		switch (entry.getOperation()) {
+			case LEADERS_IN:
+				leaderboard.leadersIn(LEADERBOARD_NAME, Integer.parseInt(arguments[0]), false, _pageSize);
+				break;
+			case AROUND_ME_IN:
+				leaderboard.aroundMeIn(LEADERBOARD_NAME, arguments[0], false, _pageSize);
+				break;
+			case RANK_MEMBER_IN:
+				leaderboard.rankMemberIn(LEADERBOARD_NAME, arguments[0], Double.parseDouble(arguments[1]));
+				break;
+			case RANKED_IN_LIST_IN:
+				leaderboard.rankedInListIn(LEADERBOARD_NAME, Arrays.asList(arguments[0].split(",")), false);
+				break;
+		}
+	}
+
+	private static Process spawnRedis(String redisServer, int port) throws Exception {
+		String logFile = new File(System.getProperty("java.io.tmpdir"), "leaderboard-load-redis.log").getPath();
+		Process process = new ProcessBuilder(redisServer, "--port", String.valueOf(port), "--save", "", "--appendonly", "no", "--logfile", logFile).start();
+
+		long deadline = System.currentTimeMillis() + 10000;
+		while (true) {
+			Jedis jedis = new Jedis(Leaderboard.DEFAULT_REDIS_HOST, port);
+			try {
+				jedis.ping();
+				return process;
+			} catch (RuntimeException e) {
+				if (System.currentTimeMillis() > deadline) {
+					process.destroy();
+					throw new IllegalStateException("redis-server did not start on port " + port, e);
+				}
+				Thread.sleep(50);
+			} finally {
+				jedis.disconnect();
+			}
+		}
+	}
+
+	private static int freePort() throws Exception {
+		ServerSocket socket = new ServerSocket(0);
+		try {
+			return socket.getLocalPort();
+		} finally {
+			socket.close();
+		}
+	}
+
+	private static Map<String, String> parseOptions(String[] args) {
+		Map<String, String> options = new HashMap<String, String>();
+		for (int i = 0; i < args.length; i++) {
+			if (!args[i].startsWith("--")) {
+				throw new IllegalArgumentException("Unexpected argument " + args[i]);
+			}
+
+			String name = args[i].substring(2);
+			if (i + 1 < args.length && !args[i + 1].startsWith("--")) {
+				options.put(name, args[++i]);
+			} else {
+				options.put(name, "true");
+			}
+		}
+
+		return options;
+	}
+
+	private static String option(Map<String, String> options, String name, String defaultValue) {
+		String value = options.get(name);
+		return value == null ? defaultValue : value;
+	}
+
+	private static Map<Operation, Integer> parseMix(String mix) {
+		Map<Operation, Integer> weights = new LinkedHashMap<Operation, Integer>();
+		for (String weight : mix.split(",")) {
+			String[] parts = weight.split("=");
+			weights.put(Operation.forTraceName(parts[0].trim()), Integer.parseInt(parts[1].trim()));
+		}
+
+		return weights;
+	}
+
+	/**
+	 * Latencies and error counts per operation
+	 */
+	public static class Report {
+		private Map<Operation, LatencyHistogram> _histograms = new EnumMap<Operation, LatencyHistogram>(Operation.class);
+		private Map<Operation, Long> _errors = new EnumMap<Operation, Long>(Operation.class);
+		private long _elapsedNanos;
+		private double _offeredRate;
+
+		public Report() {
+			for (Operation operation : Operation.values()) {
+				_histograms.put(operation, new LatencyHistogram());
+				_errors.put(operation, 0L);
+			}
+		}
+
+		public void record(Operation operation, long latencyNanos, boolean failed) {
+			_histograms.get(operation).record(latencyNanos);
+			if (failed) {
+				_errors.put(operation, _errors.get(operation) + 1);
+			}
+		}
+
+		public void add(Report other) {
+			for (Operation operation : Operation.values()) {
+				_histograms.get(operation).add(other._histograms.get(operation));
+				_errors.put(operation, _errors.get(operation) + other._errors.get(operation));
+			}
+		}
+
+		public LatencyHistogram getHistogram(Operation operation) {
+			return _histograms.get(operation);
+		}
+
+		public long getErrors(Operation operation) {
+			return _errors.get(operation);
+		}
+
+		public long getElapsedNanos() {
+			return _elapsedNanos;
+		}
+
+		public void setElapsedNanos(long elapsedNanos) {
+			_elapsedNanos = elapsedNanos;
+		}
+
+		public void setOfferedRate(double offeredRate) {
+			_offeredRate = offeredRate;
+		}
+
+		public LatencyHistogram getTotalHistogram() {
+			LatencyHistogram total = new LatencyHistogram();
+			for (LatencyHistogram histogram : _histograms.values()) {
+				total.add(histogram);
+			}
+
+			return total;
+		}
+
+		public List<String> check(List<ServiceLevelObjective> objectives) {
+			List<String> breaches = new ArrayList<String>();
+			for (ServiceLevelObjective objective : objectives) {
+				String breach = objective.check(objective.getOperation() == null ? getTotalHistogram() : _histograms.get(objective.getOperation()));
+				if (breach != null) {
+					breaches.add(breach);
+				}
+			}
+
+			return breaches;
+		}
+
+		public void print(PrintStream out) {
+			double elapsedSeconds = _elapsedNanos / 1e9;
+			long totalErrors = 0;
+
+			out.println(String.format("%-16s %10s %8s %12s %10s %10s %10s %10s", "operation", "count", "errors", "ops/s", "p50 ms", "p99 ms", "p999 ms", "max ms"));
+			for (Operation operation : Operation.values()) {
+				totalErrors += _errors.get(operation);
+				printRow(out, operation.getTraceName(), _histograms.get(operation), _errors.get(operation), elapsedSeconds);
+			}
+			printRow(out, ServiceLevelObjective.TOTAL, getTotalHistogram(), totalErrors, elapsedSeconds);
+			out.println(String.format("offered %.0f ops/s, elapsed %.1f s", _offeredRate, elapsedSeconds));
+		}
+
+		private void printRow(PrintStream out, String name, LatencyHistogram histogram, long errors, double elapsedSeconds) {
+			out.println(String.format("%-16s %10d %8d %12.0f %10.3f %10.3f %10.3f %10.3f", name, histogram.getTotalCount(), errors,
+				histogram.getTotalCount() / elapsedSeconds,
+				histogram.getValueAtPercentile(50) / 1e6, histogram.getValueAtPercentile(99) / 1e6,
+				histogram.getValueAtPercentile(99.9) / 1e6, histogram.getMaxValue() / 1e6));
+		}
+	}
+}
@@ -0,0 +1,43 @@
+package com.agoragames.leaderboard.load;
+
+/**
+ * Leaderboard operations that can appear in a trace
+ */
+public enum Operation {
+
+	LEADERS_IN("leadersIn"),
+	AROUND_ME_IN("aroundMeIn"),
+	RANK_MEMBER_IN("rankMemberIn"),
+	RANKED_IN_LIST_IN("rankedInListIn");
+
+	private final String _traceName;
+
+	private Operation(String traceName) {
+		_traceName = traceName;
+	}
+
+	/**
+	 * Get the name used for the operation in trace files and reports
+	 *
+	 * @return Trace name
+	 */
+	public String getTraceName() {
+		return _traceName;
+	}
+
+	/**
+	 * Look up an operation by the name used in trace files
+	 *
+	 * @param traceName Trace name
+	 * @return Operation
+	 */
+	public static Operation forTraceName(String traceName) {
+		for (Operation operation : values()) {
+			if (operation._traceName.equals(traceName)) {
+				return operation;
+			}
+		}
+
+		throw new IllegalArgumentException("Unknown operation " + traceName);
+	}
+}
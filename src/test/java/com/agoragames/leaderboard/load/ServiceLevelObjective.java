@@ -0,0 +1,123 @@
+package com.agoragames.leaderboard.load;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Latency target for one operation, or for all operations together, at a percentile.
+ *
+ * Objectives are written as operation:percentile=milliseconds, for example
+ * leadersIn:p99=5 or total:p999=20. Digits after a leading 99 are decimals, so
+ * p999 is the 99.9th percentile and p100 is the maximum; p99.9 is also accepted.
+ */
+public class ServiceLevelObjective {
+
+	public static final String TOTAL = "total";
+
+	private final Operation _operation;
+	private final double _percentile;
+	private final double _maxMillis;
+
+	/**
+	 * Create an objective
+	 *
+	 * @param operation Operation, or null for all operations together
+	 * @param percentile Percentile between 0 and 100
+	 * @param maxMillis Highest latency in milliseconds allowed at the percentile
+	 */
+	public ServiceLevelObjective(Operation operation, double percentile, double maxMillis) {
+		_operation = operation;
+		_percentile = percentile;
+		_maxMillis = maxMillis;
+	}
+
+	/**
+	 * Parse a comma separated list of objectives
+	 *
+	 * @param objectives Objectives, for example leadersIn:p99=5,rankMemberIn:p999=20
+	 * @return Objectives
+	 */
+	public static List<ServiceLevelObjective> parseAll(String objectives) {
+		List<ServiceLevelObjective> parsed = new ArrayList<ServiceLevelObjective>();
+		for (String objective : objectives.split(",")) {
+			parsed.add(parse(objective.trim()));
+		}
+
+		return parsed;
+	}
+
+	/**
+	 * Parse an objective
+	 *
+	 * @param objective Objective, for example leadersIn:p99=5
+	 * @return Objective
+	 */
+	public static ServiceLevelObjective parse(String objective) {
+		int colon = objective.indexOf(':');
+		int equals = objective.indexOf('=', colon + 1);
+		if (colon < 1 || equals < 0 || objective.charAt(colon + 1) != 'p') {
+			throw new IllegalArgumentException("Objective " + objective + " is not of the form operation:p99=ms");
+		}
+
+		String name = objective.substring(0, colon);
+		Operation operation = TOTAL.equals(name) ? null : Operation.forTraceName(name);
+
+		String digits = objective.substring(colon + 2, equals);
+		if (digits.indexOf('.') < 0 && digits.length() > 2 && digits.startsWith("99")) {
+			digits = digits.substring(0, 2) + "." + digits.substring(2);
+		}
+		double percentile = Double.parseDouble(digits);
+		if (percentile <= 0 || percentile > 100) {
+			throw new IllegalArgumentException("Objective " + objective + " has a percentile outside 0 to 100");
+		}
+
+		return new ServiceLevelObjective(operation, percentile, Double.parseDouble(objective.substring(equals + 1)));
+	}
+
+	/**
+	 * Get the operation
+	 *
+	 * @return Operation, or null for all operations together
+	 */
+	public Operation getOperation() {
+		return _operation;
+	}
+
+	/**
+	 * Get the percentile
+	 *
+	 * @return Percentile between 0 and 100
+	 */
+	public double getPercentile() {
+		return _percentile;
+	}
+
+	/**
+	 * Get the highest latency allowed at the percentile
+	 *
+	 * @return Latency in milliseconds
+	 */
+	public double getMaxMillis() {
+		return _maxMillis;
+	}
+
+	/**
+	 * Check the objective against a latency histogram
+	 *
+	 * @param histogram Latencies of the operation
+	 * @return Description of the breach, or null if the objective is met
+	 */
+	public String check(LatencyHistogram histogram) {
+		double millis = histogram.getValueAtPercentile(_percentile) / 1e6;
+		if (millis <= _maxMillis) {
+			return null;
+		}
+
+		return String.format("%s p%s %.3f ms exceeds %.3f ms", _operation == null ? TOTAL : _operation.getTraceName(),
+			formatPercentile(_percentile), millis, _maxMillis);
+	}
+
+	private static String formatPercentile(double percentile) {
+		return percentile == Math.rint(percentile) ? String.valueOf((long) percentile) : String.valueOf(percentile);
+	}
+}
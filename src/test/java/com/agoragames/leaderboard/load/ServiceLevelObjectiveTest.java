@@ -0,0 +1,64 @@
+package com.agoragames.leaderboard.load;
+
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class ServiceLevelObjectiveTest extends TestCase {
+
+	public void testParse() {
+		ServiceLevelObjective objective = ServiceLevelObjective.parse("leadersIn:p99=5");
+		assertEquals(Operation.LEADERS_IN, objective.getOperation());
+		assertEquals(99.0, objective.getPercentile());
+		assertEquals(5.0, objective.getMaxMillis());
+
+		assertEquals(99.9, ServiceLevelObjective.parse("rankMemberIn:p999=20").getPercentile());
+		assertEquals(99.9, ServiceLevelObjective.parse("rankMemberIn:p99.9=20").getPercentile());
+		assertEquals(50.0, ServiceLevelObjective.parse("aroundMeIn:p50=0.5").getPercentile());
+		assertEquals(100.0, ServiceLevelObjective.parse("total:p100=50").getPercentile());
+		assertEquals(99.99, ServiceLevelObjective.parse("total:p9999=50").getPercentile());
+
+		List<ServiceLevelObjective> objectives = ServiceLevelObjective.parseAll("leadersIn:p99=5, total:p999=20");
+		assertEquals(2, objectives.size());
+		assertNull(objectives.get(1).getOperation());
+	}
+
+	public void testParseRejectsMalformedObjectives() {
+		String[] malformed = { "leadersIn", "leadersIn:99=5", "leadersIn:p99", "unknownOp:p99=5", "leadersIn:p0=5", "leadersIn:p500=5" };
+		for (String objective : malformed) {
+			try {
+				ServiceLevelObjective.parse(objective);
+				fail(objective + " should be rejected");
+			} catch (IllegalArgumentException e) {
+			}
+		}
+	}
+
+	public void testCheck() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 1; i <= 100; i++) {
+			histogram.record(i * 100000L);
+		}
+
+		assertNull(ServiceLevelObjective.parse("leadersIn:p99=10").check(histogram));
+		assertNull(ServiceLevelObjective.parse("leadersIn:p50=5.1").check(histogram));
+		assertNull(ServiceLevelObjective.parse("leadersIn:p100=10.1").check(histogram));
+		assertNotNull(ServiceLevelObjective.parse("leadersIn:p100=9.95").check(histogram));
+
+		String breach = ServiceLevelObjective.parse("leadersIn:p99=9").check(histogram);
+		assertNotNull(breach);
+		assertTrue(breach, breach.startsWith("leadersIn p99 "));
+	}
+
+	public void testReportCheck() {
+		LoadGenerator.Report report = new LoadGenerator.Report();
+		report.record(Operation.LEADERS_IN, 1000000, false);
+		report.record(Operation.RANK_MEMBER_IN, 30000000, false);
+
+		assertTrue(report.check(ServiceLevelObjective.parseAll("leadersIn:p99=2,rankMemberIn:p99=40")).isEmpty());
+
+		List<String> breaches = report.check(ServiceLevelObjective.parseAll("leadersIn:p99=2,total:p99=2"));
+		assertEquals(1, breaches.size());
+		assertTrue(breaches.get(0), breaches.get(0).startsWith("total p99 "));
+	}
+}
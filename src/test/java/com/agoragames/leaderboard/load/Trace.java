@@ -0,0 +1,220 @@
+package com.agoragames.leaderboard.load;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Sequence of leaderboard operations, each with the time it is due to start
+ * relative to the beginning of the run.
+ *
+ * Trace files hold one operation per line: the start offset in microseconds,
+ * the operation name and its arguments. Lines starting with # are ignored.
+ *
+ *     0 leadersIn 1
+ *     1250 aroundMeIn member_42
+ *     2500 rankMemberIn member_7 1234.0
+ *     3750 rankedInListIn member_1,member_2,member_3
+ */
+public class Trace {
+
+	private List<Entry> _entries;
+
+	/**
+	 * Create a trace from a list of entries ordered by start offset
+	 *
+	 * @param entries Trace entries
+	 */
+	public Trace(List<Entry> entries) {
+		_entries = entries;
+	}
+
+	/**
+	 * Get the trace entries
+	 *
+	 * @return Trace entries ordered by start offset
+	 */
+	public List<Entry> getEntries() {
+		return _entries;
+	}
+
+	/**
+	 * Get the number of operations in the trace
+	 *
+	 * @return Number of operations
+	 */
+	public int size() {
+		return _entries.size();
+	}
+
+	/**
+	 * Generate a synthetic trace at a fixed rate
+	 *
+	 * @param operations Number of operations
+	 * @param rate Operations per second
+	 * @param mix Relative weight of each operation
+	 * @param totalMembers Number of members in the leaderboard
+	 * @param pageSize Page size used by the leaderboard
+	 * @param random Source of randomness
+	 * @return Synthetic trace
+	 */
+	public static Trace synthetic(int operations, double rate, Map<Operation, Integer> mix, int totalMembers, int pageSize, Random random) {
+		int totalWeight = 0;
+		for (Integer weight : mix.values()) {
+			totalWeight += weight;
+		}
+		if (totalWeight < 1) {
+			throw new IllegalArgumentException("Operation mix has no weight");
+		}
+
+		int totalPages = Math.max(1, (totalMembers + pageSize - 1) / pageSize);
+		List<Entry> entries = new ArrayList<Entry>(operations);
+		for (int i = 0; i < operations; i++) {
+			long offsetNanos = (long) (i * 1e9 / rate);
+			Operation operation = pick(mix, totalWeight, random);
+
+			switch (operation) {
+				case LEADERS_IN:
+					// Most lobby screens show the first page
+					int page = random.nextBoolean() ? 1 : 1 + random.nextInt(totalPages);
+					entries.add(new Entry(offsetNanos, operation, String.valueOf(page)));
+					break;
+				case AROUND_ME_IN:
+					entries.add(new Entry(offsetNanos, operation, randomMember(totalMembers, random)));
+					break;
+				case RANK_MEMBER_IN:
+					entries.add(new Entry(offsetNanos, operation, randomMember(totalMembers, random), String.valueOf(random.nextInt(totalMembers * 10))));
+					break;
+				case RANKED_IN_LIST_IN:
+					StringBuilder members = new StringBuilder();
+					for (int j = 0; j < 10; j++) {
+						if (j > 0) {
+							members.append(',');
+						}
+						members.append(randomMember(totalMembers, random));
+					}
+					entries.add(new Entry(offsetNanos, operation, members.toString()));
+					break;
+			}
+		}
+
+		return new Trace(entries);
+	}
+
+	/**
+	 * Read a trace file
+	 *
+	 * @param file Trace file
+	 * @return Trace
+	 * @throws IOException if the file cannot be read
+	 */
+	public static Trace read(File file) throws IOException {
+		List<Entry> entries = new ArrayList<Entry>();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				line = line.trim();
+				if (line.length() == 0 || line.startsWith("#")) {
+					continue;
+				}
+
+				String[] fields = line.split("\\s+");
+				String[] arguments = Arrays.copyOfRange(fields, 2, fields.length);
+				entries.add(new Entry(Long.parseLong(fields[0]) * 1000, Operation.forTraceName(fields[1]), arguments));
+			}
+		} finally {
+			reader.close();
+		}
+
+		Collections.sort(entries, new Comparator<Entry>() {
+			public int compare(Entry a, Entry b) {
+				return a.getOffsetNanos() < b.getOffsetNanos() ? -1 : (a.getOffsetNanos() == b.getOffsetNanos() ? 0 : 1);
+			}
+		});
+		return new Trace(entries);
+	}
+
+	/**
+	 * Write the trace to a file that can be replayed with read
+	 *
+	 * @param file Trace file
+	 * @throws IOException if the file cannot be written
+	 */
+	public void write(File file) throws IOException {
+		Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+		try {
+			writer.write("# offsetMicros operation arguments\n");
+			for (Entry entry : _entries) {
+				writer.write(String.valueOf(entry.getOffsetNanos() / 1000));
+				writer.write(' ');
+				writer.write(entry.getOperation().getTraceName());
+				for (String argument : entry.getArguments()) {
+					writer.write(' ');
+					writer.write(argument);
+				}
+				writer.write('\n');
+			}
+		} finally {
+			writer.close();
+		}
+	}
+
+	/**
+	 * Re-time the trace so that operations start at a fixed rate, keeping their order
+	 *
+	 * @param rate Operations per second
+	 * @return Re-timed trace
+	 */
+	public Trace atRate(double rate) {
+		List<Entry> entries = new ArrayList<Entry>(_entries.size());
+		for (int i = 0; i < _entries.size(); i++) {
+			Entry entry = _entries.get(i);
+			entries.add(new Entry((long) (i * 1e9 / rate), entry.getOperation(), entry.getArguments()));
+		}
+
+		return new Trace(entries);
+	}
+
+	private static Operation pick(Map<Operation, Integer> mix, int totalWeight, Random random) {
+		int choice = random.nextInt(totalWeight);
+		for (Map.Entry<Operation, Integer> weight : mix.entrySet()) {
+			choice -= weight.getValue();
+			if (choice < 0) {
+				return weight.getKey();
+			}
+		}
+
+		throw new IllegalStateException("Operation mix changed while picking");
+	}
+
+	private static String randomMember(int totalMembers, Random random) {
+		return "member_" + (1 + random.nextInt(totalMembers));
+	}
+
+	/**
+	 * A single operation in a trace
+	 */
+	public static class Entry {
+		private final long _offsetNanos;
+		private final Operation _operation;
+		private final String[] _arguments;
+
+		public Entry(long offsetNanos, Operation operation, String... arguments) {
+			_offsetNanos = offsetNanos;
+			_operation = operation;
+			_arguments = arguments;
+		}
+
+		public long getOffsetNanos() {
+			return _offsetNanos;
+		}
+
+		public Operation getOperation() {
+			return _operation;
+		}
+
+		public String[] getArguments() {
+			return _arguments;
+		}
+	}
+}
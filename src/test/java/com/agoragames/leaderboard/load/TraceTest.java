@@ -0,0 +1,75 @@
+package com.agoragames.leaderboard.load;
+
+import java.io.*;
+import java.util.*;
+
+import junit.framework.TestCase;
+
+public class TraceTest extends TestCase {
+
+	private File _file;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+
+		_file = File.createTempFile("trace", ".txt");
+	}
+
+	protected void tearDown() throws Exception {
+		super.tearDown();
+
+		_file.delete();
+	}
+
+	public void testWriteAndRead() throws IOException {
+		Map<Operation, Integer> mix = new LinkedHashMap<Operation, Integer>();
+		for (Operation operation : Operation.values()) {
+			mix.put(operation, 1);
+		}
+		Trace trace = Trace.synthetic(1000, 3000, mix, 500, 25, new Random(42));
+		assertEquals(1000, trace.size());
+
+		trace.write(_file);
+		Trace read = Trace.read(_file);
+
+		assertEquals(trace.size(), read.size());
+		for (int i = 0; i < trace.size(); i++) {
+			Trace.Entry entry = trace.getEntries().get(i);
+			Trace.Entry readEntry = read.getEntries().get(i);
+			assertEquals(entry.getOffsetNanos() / 1000 * 1000, readEntry.getOffsetNanos());
+			assertEquals(entry.getOperation(), readEntry.getOperation());
+			assertTrue(Arrays.equals(entry.getArguments(), readEntry.getArguments()));
+		}
+	}
+
+	public void testReadSkipsCommentsAndSortsByOffset() throws IOException {
+		Writer writer = new OutputStreamWriter(new FileOutputStream(_file), "UTF-8");
+		writer.write("# recorded trace\n\n2500 rankMemberIn member_7 1234.0\n0 leadersIn 1\n  1250 aroundMeIn member_42  \n");
+		writer.close();
+
+		List<Trace.Entry> entries = Trace.read(_file).getEntries();
+		assertEquals(3, entries.size());
+		assertEquals(0, entries.get(0).getOffsetNanos());
+		assertEquals(Operation.LEADERS_IN, entries.get(0).getOperation());
+		assertEquals(1250000, entries.get(1).getOffsetNanos());
+		assertEquals("member_42", entries.get(1).getArguments()[0]);
+		assertEquals(Operation.RANK_MEMBER_IN, entries.get(2).getOperation());
+		assertEquals("1234.0", entries.get(2).getArguments()[1]);
+	}
+
+	public void testAtRate() {
+		List<Trace.Entry> entries = new ArrayList<Trace.Entry>();
+		entries.add(new Trace.Entry(0, Operation.LEADERS_IN, "1"));
+		entries.add(new Trace.Entry(5000, Operation.AROUND_ME_IN, "member_1"));
+		entries.add(new Trace.Entry(7000, Operation.RANK_MEMBER_IN, "member_2", "10"));
+
+		Trace retimed = new Trace(entries).atRate(1000);
+		assertEquals(3, retimed.size());
+		for (int i = 0; i < 3; i++) {
+			assertEquals(i * 1000000L, retimed.getEntries().get(i).getOffsetNanos());
+			assertEquals(entries.get(i).getOperation(), retimed.getEntries().get(i).getOperation());
+			assertTrue(Arrays.equals(entries.get(i).getArguments(), retimed.getEntries().get(i).getArguments()));
+		}
+		assertEquals(7000, entries.get(2).getOffsetNanos());
+	}
+}